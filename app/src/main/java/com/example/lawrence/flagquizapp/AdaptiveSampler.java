@@ -0,0 +1,136 @@
+package com.example.lawrence.flagquizapp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// picks quiz flags weighted by how hard the user finds them: flags that are often guessed wrong
+// or take long to answer come up more often, flags never shown get an average weight.
+// the alias table is built from a bound a little above each weight, and a drawn flag is kept with
+// probability weight / bound, which is exact for any weight up to its bound. so new answers only
+// update the weights of the flags they were for, and the table is only rebuilt when the candidate
+// flags change or a weight leaves its bound. every draw is O(1) expected, regardless of catalog size.
+// not thread-safe.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class AdaptiveSampler {
+
+    static final float BASE_WEIGHT = 1f;            // weight of a flag always answered right and fast
+    static final float ERROR_WEIGHT = 4f;           // added at a 100% error rate
+    static final float SLOW_WEIGHT = 2f;            // added at SLOW_ANSWER_MILLIS or slower
+    static final long SLOW_ANSWER_MILLIS = 10000;
+    static final float UNSEEN_ERROR_RATE = 0.5f;    // assumed for flags that were never shown
+    static final float UNSEEN_WEIGHT = BASE_WEIGHT + ERROR_WEIGHT * UNSEEN_ERROR_RATE;
+    static final float MAX_WEIGHT = BASE_WEIGHT + ERROR_WEIGHT + SLOW_WEIGHT;
+
+    // bounds are this much above the weights they were built from, and a weight may drop to
+    // bound / HEADROOM^2 before the table is rebuilt, so draws are accepted at least 44% of the time
+    static final float HEADROOM = 1.5f;
+
+    private float[] weights = new float[0];     // weight of each flag, indexed by flag id
+    private int[] weighedAttempts = new int[0]; // attempts each weight was computed from
+    private int[] columns = new int[0];         // table column of each flag, -1 if not in the table
+
+    private final AliasTable table = new AliasTable();
+    private int[] tableFlags = new int[0];      // flag id of each table column
+    private float[] tableBounds = new float[0];
+    private int tableCount;
+    private boolean tableDirty = true;
+    private int rebuildCount;
+
+    // weight of a flag from its stats, see the constants above
+    static float weightOf(AnswerStats stats, int flagId) {
+        if( stats.getAttempts(flagId) == 0 ) return UNSEEN_WEIGHT;
+
+        float slowness = Math.min(1f, stats.getAverageAnswerMillis(flagId) / (float) SLOW_ANSWER_MILLIS);
+        return BASE_WEIGHT + ERROR_WEIGHT * stats.getErrorRate(flagId) + SLOW_WEIGHT * slowness;
+    }
+
+    // recompute the weights of every flag answered since the last update
+    public void updateStats(AnswerStats stats) {
+        ensureSize(stats.size());
+
+        for( int id=0; id < stats.size(); ++id ){
+            if( stats.getAttempts(id) != weighedAttempts[id] ) updateWeight(stats, id);
+        }
+    }
+
+    // recompute the weights of the first count flag ids only, e.g. those answered since the last update
+    public void updateStats(AnswerStats stats, int[] changedIds, int count) {
+        for( int i=0; i < count; ++i ){
+            ensureSize(changedIds[i] + 1);
+            updateWeight(stats, changedIds[i]);
+        }
+    }
+
+    public float getWeight(int flagId) {
+        return flagId < weights.length ? weights[flagId] : UNSEEN_WEIGHT;
+    }
+
+    // make sample() draw from the first count flag ids, rebuilding the table only if needed
+    public void prepare(int[] flagIds, int count) {
+        if( !tableDirty && count == tableCount && rangeEquals(flagIds, tableFlags, count) ) return;
+
+        for( int i=0; i < tableCount; ++i ){
+            if( tableFlags[i] < columns.length ) columns[tableFlags[i]] = -1;
+        }
+        if( tableFlags.length < count ){
+            tableFlags = new int[count];
+            tableBounds = new float[count];
+        }
+        for( int i=0; i < count; ++i ){
+            int flagId = flagIds[i];
+            ensureSize(flagId + 1);
+            tableFlags[i] = flagId;
+            tableBounds[i] = Math.min(MAX_WEIGHT, weights[flagId] * HEADROOM);
+            columns[flagId] = i;
+        }
+        tableCount = count;
+        table.build(tableBounds, count);
+
+        tableDirty = false;
+        ++rebuildCount;
+    }
+
+    // weighted random flag id among those passed to prepare(), O(1) expected
+    public int sample(Random random) {
+        while( true ){
+            int column = table.sample(random);
+            int flagId = tableFlags[column];
+            if( random.nextFloat() * tableBounds[column] < weights[flagId] ) return flagId;
+        }
+    }
+
+    // number of times the alias table was built
+    public int getRebuildCount() { return rebuildCount; }
+
+    private void updateWeight(AnswerStats stats, int flagId) {
+        float weight = weightOf(stats, flagId);
+        weighedAttempts[flagId] = stats.getAttempts(flagId);
+        weights[flagId] = weight;
+
+        // the table stays exact as long as the weight is within its bound
+        int column = columns[flagId];
+        if( column >= 0 && (weight > tableBounds[column] ||
+                            weight * HEADROOM * HEADROOM < tableBounds[column]) ){
+            tableDirty = true;
+        }
+    }
+
+    private void ensureSize(int size) {
+        if( weights.length >= size ) return;
+
+        int oldSize = weights.length;
+        int newSize = Math.max(size, 2 * oldSize);
+        weights = Arrays.copyOf(weights, newSize);
+        weighedAttempts = Arrays.copyOf(weighedAttempts, newSize);
+        columns = Arrays.copyOf(columns, newSize);
+        Arrays.fill(weights, oldSize, newSize, UNSEEN_WEIGHT);
+        Arrays.fill(columns, oldSize, newSize, -1);
+    }
+
+    private static boolean rangeEquals(int[] a, int[] b, int count) {
+        for( int i=0; i < count; ++i ){
+            if( a[i] != b[i] ) return false;
+        }
+        return true;
+    }
+}
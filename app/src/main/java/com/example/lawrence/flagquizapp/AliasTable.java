@@ -0,0 +1,90 @@
+package com.example.lawrence.flagquizapp;
+
+import java.util.Random;
+
+// draws index i with probability weights[i] / sum(weights) in O(1), using Vose's alias method.
+// building the table is O(n). rebuilding reuses its arrays once they have grown to fit.
+// not thread-safe.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class AliasTable {
+
+    private float[] probabilities = new float[0];   // chance of keeping column i instead of its alias
+    private int[] aliases = new int[0];
+    private int size;
+
+    // work lists of columns below and above the average weight, only used while building
+    private int[] small = new int[0];
+    private int[] large = new int[0];
+    private double[] scaled = new double[0];
+
+    // build the table from the first count weights, which must not be negative.
+    // if they are all zero every index is equally likely.
+    public void build(float[] weights, int count) {
+        if( count <= 0 ) throw new IllegalArgumentException("No weights");
+        ensureCapacity(count);
+        size = count;
+
+        double sum = 0;
+        for( int i=0; i < count; ++i ){
+            if( weights[i] < 0 ) throw new IllegalArgumentException("Negative weight at " + i);
+            sum += weights[i];
+        }
+
+        // scale so the average column is 1, then split columns into below and above average
+        int smallCount = 0;
+        int largeCount = 0;
+        for( int i=0; i < count; ++i ){
+            scaled[i] = sum > 0 ? weights[i] * count / sum : 1;
+            if( scaled[i] < 1 ){
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        // fill each small column up to 1 with part of a large one
+        while( smallCount > 0 && largeCount > 0 ){
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            probabilities[less] = (float) scaled[less];
+            aliases[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if( scaled[more] < 1 ){
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // whatever is left is 1 up to rounding errors
+        while( largeCount > 0 ){
+            int column = large[--largeCount];
+            probabilities[column] = 1;
+            aliases[column] = column;
+        }
+        while( smallCount > 0 ){
+            int column = small[--smallCount];
+            probabilities[column] = 1;
+            aliases[column] = column;
+        }
+    }
+
+    // random index, weighted as passed to build()
+    public int sample(Random random) {
+        int column = random.nextInt(size);
+        return random.nextFloat() < probabilities[column] ? column : aliases[column];
+    }
+
+    public int size() { return size; }
+
+    private void ensureCapacity(int count) {
+        if( probabilities.length >= count ) return;
+        probabilities = new float[count];
+        aliases = new int[count];
+        small = new int[count];
+        large = new int[count];
+        scaled = new double[count];
+    }
+}
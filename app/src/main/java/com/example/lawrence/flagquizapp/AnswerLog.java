@@ -0,0 +1,420 @@
+package com.example.lawrence.flagquizapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// append-only log of every guess, kept in app storage.
+// record() only copies the guess into an in-memory batch, full batches are appended to the log file
+// on a background thread, so recording never does I/O on the UI thread.
+// records are fixed-width and checksummed, a record torn by a crash is dropped when the log is opened.
+// once the log holds COMPACT_RECORDS records it is folded into per-flag AnswerStats and emptied,
+// so any amount of history loads as one set of counters per flag.
+public class AnswerLog {
+
+    private static final String TAG = "AnswerLog";
+
+    public static final String LOG_FILE = "answers.log";
+    public static final String STATS_FILE = "answers.stats";
+
+    // log layout (big-endian):
+    //   int    LOG_MAGIC
+    //   short  VERSION
+    //   short  RECORD_SIZE
+    //   long   epoch, incremented by every compaction
+    //   records of RECORD_SIZE bytes:
+    //          int flag id, int chosen flag id, int millis to answer,
+    //          long timestamp (System.currentTimeMillis()), int CRC32 of the first 20 bytes
+    // version 1 logs had short ids (RECORD_SIZE_V1), they are still read and compacted right away.
+    // a guess was correct if the chosen flag is the flag shown.
+    //
+    // stats layout:
+    //   int    STATS_MAGIC
+    //   short  VERSION
+    //   long   epoch of the first log not yet included in the stats
+    //   AnswerStats
+    static final int LOG_MAGIC = 0x464C414C;       // "FLAL"
+    static final int STATS_MAGIC = 0x464C4153;     // "FLAS"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 4 + 2 + 2 + 8;
+    static final int RECORD_SIZE = 4 + 4 + 4 + 8 + 4;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;    // record without its checksum
+    private static final int RECORD_SIZE_V1 = 2 + 2 + 4 + 8 + 4;
+
+    // highest flag id that can be recorded, keeps the per-flag stats arrays bounded
+    public static final int MAX_FLAG_ID = AnswerStats.MAX_SIZE - 1;
+
+    static final int BATCH_RECORDS = 32;        // guesses buffered before they are written
+    static final int COMPACT_RECORDS = 8192;    // log records that trigger a compaction, 192 KB
+
+    private final File logFile;
+    private final File statsFile;
+    private final ExecutorService executor;     // single background thread doing all file I/O
+
+    // guarded by this: guesses not yet handed to the background thread, and stats of every guess
+    private byte[] pending = new byte[2 * BATCH_RECORDS * PAYLOAD_SIZE];
+    private int pendingCount;
+    private boolean flushQueued;
+    private boolean closed;
+    private final AnswerStats stats = new AnswerStats();
+    private final BitSet changedIds = new BitSet();     // flags whose stats changed since updateSampler()
+    private int[] changedBuffer = new int[64];
+
+    // only touched on the background thread
+    private RandomAccessFile log;               // null if the log could not be opened
+    private long epoch;
+    private int logRecords;                     // records in the log file
+    private int logVersion;                     // format of the records in the log file
+    private AnswerStats persistedStats;         // stats file plus log file
+    private byte[] writeBuffer = new byte[0];
+    private final CRC32 crc = new CRC32();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    // the files are opened and read in the background, guesses can be recorded right away
+    public AnswerLog(File directory) {
+        logFile = new File(directory, LOG_FILE);
+        statsFile = new File(directory, STATS_FILE);
+        executor = Executors.newSingleThreadExecutor();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    // record one guess. allocates nothing, and only queues a background write once a batch is full.
+    public synchronized void record(int flagId, int chosenId, long answerMillis, long timestamp) {
+        if( flagId < 0 || flagId > MAX_FLAG_ID || chosenId < 0 || chosenId > MAX_FLAG_ID ){
+            throw new IllegalArgumentException("Flag id out of range: " + flagId + ", " + chosenId);
+        }
+        if( closed ) return;
+        stats.add(flagId, flagId == chosenId, answerMillis);
+        changedIds.set(flagId);
+
+        // only grows if the background thread falls a whole batch behind
+        if( (pendingCount + 1) * PAYLOAD_SIZE > pending.length ){
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+
+        int offset = pendingCount * PAYLOAD_SIZE;
+        putInt(pending, offset, flagId);
+        putInt(pending, offset + 4, chosenId);
+        putInt(pending, offset + 8, (int) Math.min(answerMillis, Integer.MAX_VALUE));
+        putInt(pending, offset + 12, (int) (timestamp >>> 32));
+        putInt(pending, offset + 16, (int) timestamp);
+        ++pendingCount;
+
+        if( pendingCount >= BATCH_RECORDS ) flush();
+    }
+
+    // write buffered guesses in the background without waiting for a full batch,
+    // e.g. when the app is about to go to the background
+    public synchronized void flush() {
+        if( closed || flushQueued || pendingCount == 0 ) return;
+        flushQueued = true;
+        executor.execute(flushTask);
+    }
+
+    // flush, then wait for the background thread to finish and close the log file
+    public void close() throws InterruptedException {
+        synchronized( this ){
+            if( closed ) return;
+            flush();
+            closed = true;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeLog();
+            }
+        });
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // per-flag stats of every guess ever recorded, including those not yet written
+    public synchronized AnswerStats getStats() {
+        return new AnswerStats(stats);
+    }
+
+    // pass the flags guessed since the last call to sampler, so it only reweighs those.
+    // the stats loaded from disk count as changed too, so the first call after loading covers
+    // every flag. meant for the one sampler that lives as long as this log.
+    public synchronized void updateSampler(AdaptiveSampler sampler) {
+        int count = changedIds.cardinality();
+        if( changedBuffer.length < count ) changedBuffer = new int[Math.max(count, 2 * changedBuffer.length)];
+
+        int i = 0;
+        for( int id = changedIds.nextSetBit(0); id >= 0; id = changedIds.nextSetBit(id + 1) ){
+            changedBuffer[i++] = id;
+        }
+        sampler.updateStats(stats, changedBuffer, count);
+        changedIds.clear();
+    }
+
+    // read the stats and the log, dropping a torn tail, or start both from scratch
+    private void open() {
+        try{
+            AnswerStats loaded = new AnswerStats();
+            long statsEpoch = 0;
+
+            if( statsFile.exists() ){
+                try{
+                    DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(new FileInputStream(statsFile)));
+                    try{
+                        if( in.readInt() != STATS_MAGIC ){
+                            throw new IOException("Not an answer stats file: " + statsFile);
+                        }
+                        // the stats layout is the same in both versions
+                        int version = in.readShort();
+                        if( recordSize(version) < 0 ){
+                            throw new IOException("Unsupported answer stats version: " + version);
+                        }
+                        statsEpoch = in.readLong();
+                        loaded = AnswerStats.read(in);
+                    } finally {
+                        in.close();
+                    }
+                } catch(IOException ioe) {
+                    // keep the file for a look, but don't let it stop guesses from being saved
+                    File corruptFile = new File(statsFile.getPath() + ".corrupt");
+                    Log.e(TAG, "Unreadable answer stats, moved to " + corruptFile, ioe);
+                    if( !statsFile.renameTo(corruptFile) && !statsFile.delete() ){
+                        throw new IOException("Unable to remove " + statsFile);
+                    }
+                    loaded = new AnswerStats();
+                    statsEpoch = 0;
+                }
+            }
+
+            File directory = logFile.getParentFile();
+            if( !directory.isDirectory() && !directory.mkdirs() ){
+                throw new IOException("Unable to create " + directory);
+            }
+            log = new RandomAccessFile(logFile, "rw");
+
+            long logEpoch = readLogHeader();
+            if( logEpoch < statsEpoch ){
+                // no log yet, or it was compacted into the stats right before a crash
+                resetLog(statsEpoch);
+            } else {
+                epoch = logEpoch;
+                logRecords = readRecords(loaded);
+            }
+            persistedStats = loaded;
+
+            synchronized( this ){
+                stats.addAll(loaded);
+                changedIds.set(0, loaded.size());
+            }
+            // an old log is folded into the stats, so new records are only ever appended to a new log
+            if( logRecords >= COMPACT_RECORDS || logVersion != VERSION ) compact();
+        } catch(IOException ioe) {
+            Log.e(TAG, "Unable to open answer log, guesses won't be saved", ioe);
+            closeLog();
+        }
+    }
+
+    // epoch of the log, -1 if it has no valid header. also sets logVersion.
+    private long readLogHeader() throws IOException {
+        if( log.length() < HEADER_SIZE ) return -1;
+
+        log.seek(0);
+        if( log.readInt() != LOG_MAGIC ) return -1;
+        logVersion = log.readShort();
+        if( log.readShort() != recordSize(logVersion) ) return -1;
+        return log.readLong();
+    }
+
+    // size of a record in a log of the given version, -1 if the version is unknown
+    private static int recordSize(int version) {
+        if( version == VERSION ) return RECORD_SIZE;
+        if( version == 1 ) return RECORD_SIZE_V1;
+        return -1;
+    }
+
+    // add every valid record to stats and cut the log after the last one, returns the record count
+    private int readRecords(AnswerStats into) throws IOException {
+        int recordSize = recordSize(logVersion);
+        int payloadSize = recordSize - 4;
+        long length = log.length();
+        byte[] buffer = new byte[recordSize * 256];
+        int count = 0;
+
+        log.seek(HEADER_SIZE);
+        while( HEADER_SIZE + (long) (count + 1) * recordSize <= length ){
+            int chunk = (int) Math.min(buffer.length / recordSize,
+                                       (length - HEADER_SIZE) / recordSize - count);
+            log.readFully(buffer, 0, chunk * recordSize);
+
+            for( int i=0; i < chunk; ++i ){
+                int offset = i * recordSize;
+                crc.reset();
+                crc.update(buffer, offset, payloadSize);
+                if( (int) crc.getValue() != getInt(buffer, offset + payloadSize) ){
+                    // torn write, everything from here on is lost
+                    return truncateLog(count, recordSize);
+                }
+
+                if( logVersion == 1 ){
+                    addRecordV1(into, buffer, offset);
+                } else if( !addRecord(into, buffer, offset) ){
+                    Log.w(TAG, "Flag id out of range in answer log record " + count);
+                    return truncateLog(count, recordSize);
+                }
+                ++count;
+            }
+        }
+
+        return truncateLog(count, recordSize);
+    }
+
+    private int truncateLog(int records, int recordSize) throws IOException {
+        long end = HEADER_SIZE + (long) records * recordSize;
+        if( log.length() != end ){
+            Log.w(TAG, "Dropping " + (log.length() - end) + " bytes of incomplete answer log");
+            log.setLength(end);
+        }
+        log.seek(end);
+        return records;
+    }
+
+    // start an empty log with the given epoch
+    private void resetLog(long newEpoch) throws IOException {
+        log.setLength(0);
+        log.seek(0);
+        log.writeInt(LOG_MAGIC);
+        log.writeShort(VERSION);
+        log.writeShort(RECORD_SIZE);
+        log.writeLong(newEpoch);
+        log.getChannel().force(false);
+
+        epoch = newEpoch;
+        logRecords = 0;
+        logVersion = VERSION;
+    }
+
+    // append the pending batch to the log
+    private void writePending() {
+        int count;
+        synchronized( this ){
+            flushQueued = false;
+            count = pendingCount;
+            if( writeBuffer.length < count * RECORD_SIZE ) writeBuffer = new byte[count * RECORD_SIZE];
+            for( int i=0; i < count; ++i ){
+                System.arraycopy(pending, i * PAYLOAD_SIZE, writeBuffer, i * RECORD_SIZE, PAYLOAD_SIZE);
+            }
+            pendingCount = 0;
+        }
+        if( log == null || count == 0 ) return;
+
+        for( int i=0; i < count; ++i ){
+            int offset = i * RECORD_SIZE;
+            crc.reset();
+            crc.update(writeBuffer, offset, PAYLOAD_SIZE);
+            putInt(writeBuffer, offset + PAYLOAD_SIZE, (int) crc.getValue());
+            addRecord(persistedStats, writeBuffer, offset);
+        }
+
+        try{
+            log.write(writeBuffer, 0, count * RECORD_SIZE);
+            log.getChannel().force(false);
+            logRecords += count;
+
+            if( logRecords >= COMPACT_RECORDS ) compact();
+        } catch(IOException ioe) {
+            Log.e(TAG, "Unable to write answer log", ioe);
+        }
+    }
+
+    // fold the log into the stats file, then empty it.
+    // the stats are written to a new file and renamed over the old one, and record the epoch of
+    // the next log, so a crash at any point neither loses nor double counts guesses.
+    private void compact() throws IOException {
+        File tempFile = new File(statsFile.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(tempFile);
+        try{
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(STATS_MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(epoch + 1);
+            persistedStats.write(out);
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+
+        if( !tempFile.renameTo(statsFile) ){
+            throw new IOException("Unable to replace " + statsFile);
+        }
+        Log.d(TAG, "Compacted " + logRecords + " answers into " + statsFile);
+        resetLog(epoch + 1);
+    }
+
+    private void closeLog() {
+        if( log == null ) return;
+        try{
+            log.close();
+        } catch(IOException ioe) {
+            Log.e(TAG, "Unable to close answer log", ioe);
+        }
+        log = null;
+    }
+
+    // false if the record has an id record() would have rejected
+    private static boolean addRecord(AnswerStats into, byte[] buffer, int offset) {
+        int flagId = getInt(buffer, offset);
+        int chosenId = getInt(buffer, offset + 4);
+        if( flagId < 0 || flagId > MAX_FLAG_ID || chosenId < 0 || chosenId > MAX_FLAG_ID ) return false;
+
+        into.add(flagId, flagId == chosenId, getInt(buffer, offset + 8));
+        return true;
+    }
+
+    private static void addRecordV1(AnswerStats into, byte[] buffer, int offset) {
+        int flagId = getShort(buffer, offset);
+        int chosenId = getShort(buffer, offset + 2);
+        into.add(flagId, flagId == chosenId, getInt(buffer, offset + 4));
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >> 24);
+        buffer[offset + 1] = (byte) (value >> 16);
+        buffer[offset + 2] = (byte) (value >> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int getShort(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    private static int getInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) |
+               ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+}
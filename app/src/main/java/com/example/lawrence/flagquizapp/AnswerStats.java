@@ -0,0 +1,112 @@
+package com.example.lawrence.flagquizapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// answer counters of each flag, indexed by flag id. this is what the answer log is compacted into,
+// so its size only depends on the number of flags, not on how long the app has been used.
+// not thread-safe.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class AnswerStats {
+
+    public static final int MAX_SIZE = 1 << 20;  // flag ids covered at most, read() rejects more
+
+    private int[] attempts = new int[0];        // guesses made while the flag was shown
+    private int[] correctCounts = new int[0];   // of which were correct
+    private long[] answerMillis = new long[0];  // total time from showing the flag to each guess
+
+    public AnswerStats() {}
+
+    public AnswerStats(AnswerStats other) {
+        attempts = other.attempts.clone();
+        correctCounts = other.correctCounts.clone();
+        answerMillis = other.answerMillis.clone();
+    }
+
+    // count one guess at the given flag
+    public void add(int flagId, boolean correct, long millis) {
+        ensureSize(flagId + 1);
+        ++attempts[flagId];
+        if( correct ) ++correctCounts[flagId];
+        answerMillis[flagId] += millis;
+    }
+
+    public void addAll(AnswerStats other) {
+        ensureSize(other.size());
+        for( int id=0; id < other.size(); ++id ){
+            attempts[id] += other.attempts[id];
+            correctCounts[id] += other.correctCounts[id];
+            answerMillis[id] += other.answerMillis[id];
+        }
+    }
+
+    // number of flag ids covered, one more than the highest flag id ever guessed
+    public int size() { return attempts.length; }
+
+    public int getAttempts(int flagId) {
+        return flagId < attempts.length ? attempts[flagId] : 0;
+    }
+
+    public int getCorrectCount(int flagId) {
+        return flagId < correctCounts.length ? correctCounts[flagId] : 0;
+    }
+
+    public long getTotalAnswerMillis(int flagId) {
+        return flagId < answerMillis.length ? answerMillis[flagId] : 0;
+    }
+
+    // fraction of guesses at this flag that were wrong, 0 if it was never shown
+    public float getErrorRate(int flagId) {
+        int count = getAttempts(flagId);
+        return count == 0 ? 0f : (count - getCorrectCount(flagId)) / (float) count;
+    }
+
+    // average time to a guess at this flag, 0 if it was never shown
+    public long getAverageAnswerMillis(int flagId) {
+        int count = getAttempts(flagId);
+        return count == 0 ? 0 : getTotalAnswerMillis(flagId) / count;
+    }
+
+    public long getTotalAttempts() {
+        long total = 0;
+        for( int count : attempts ){
+            total += count;
+        }
+        return total;
+    }
+
+    // int attempts, int correct count, long answer millis for each flag id
+    public static AnswerStats read(DataInputStream in) throws IOException {
+        AnswerStats stats = new AnswerStats();
+        int size = in.readInt();
+        if( size < 0 || size > MAX_SIZE ){
+            throw new IOException("Bad answer stats size: " + size);
+        }
+        stats.ensureSize(size);
+
+        for( int id=0; id < size; ++id ){
+            stats.attempts[id] = in.readInt();
+            stats.correctCounts[id] = in.readInt();
+            stats.answerMillis[id] = in.readLong();
+        }
+        return stats;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(attempts.length);
+        for( int id=0; id < attempts.length; ++id ){
+            out.writeInt(attempts[id]);
+            out.writeInt(correctCounts[id]);
+            out.writeLong(answerMillis[id]);
+        }
+    }
+
+    private void ensureSize(int size) {
+        if( attempts.length >= size ) return;
+        attempts = Arrays.copyOf(attempts, size);
+        correctCounts = Arrays.copyOf(correctCounts, size);
+        answerMillis = Arrays.copyOf(answerMillis, size);
+    }
+}
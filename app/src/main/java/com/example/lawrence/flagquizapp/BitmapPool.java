@@ -0,0 +1,95 @@
+package com.example.lawrence.flagquizapp;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// small pool of flag bitmaps that are no longer displayed or cached.
+// FlagDecoder hands them to BitmapFactory as inBitmap, so decoding the next flag reuses the
+// previous flag's pixel buffer instead of allocating a new one (and later garbage collecting it).
+// safe to use from both the UI thread and the decoding thread.
+public class BitmapPool {
+
+    private final int maxSize;      // max num of bitmaps kept, extra ones are recycled
+    private final List<Bitmap> bitmaps = new ArrayList<>();    // oldest first
+
+    // reuse statistics
+    private int reuseCount;
+    private int missCount;
+
+    public BitmapPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // return a bitmap that can be decoded into with the given dimensions and config,
+    // or null if the pool has none. the bitmap is removed from the pool.
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int match = -1;
+
+        for( int i=0; i < bitmaps.size(); ++i ){
+            Bitmap bitmap = bitmaps.get(i);
+            if( bitmap.getConfig() != config ) continue;
+
+            // exact size match works on every api level
+            if( bitmap.getWidth() == width && bitmap.getHeight() == height ){
+                match = i;
+                break;
+            }
+
+            // since KitKat any bitmap that is big enough can be reused
+            if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT &&
+                bitmap.getAllocationByteCount() >= width * height * bytesPerPixel(config) ){
+                match = i;
+            }
+        }
+
+        if( match < 0 ){
+            ++missCount;
+            return null;
+        }
+
+        ++reuseCount;
+        return bitmaps.remove(match);
+    }
+
+    // hand a bitmap to the pool once nothing draws or caches it anymore
+    public synchronized void put(Bitmap bitmap) {
+        // only mutable bitmaps can be decoded into
+        if( bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() ) return;
+        if( bitmaps.contains(bitmap) ) return;
+
+        bitmaps.add(bitmap);
+        if( bitmaps.size() > maxSize ){
+            bitmaps.remove(0).recycle();
+        }
+    }
+
+    // recycle every pooled bitmap, e.g. when the quiz view is destroyed
+    public synchronized void clear() {
+        for( Bitmap bitmap : bitmaps ){
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+    }
+
+    public synchronized int getReuseCount() { return reuseCount; }
+
+    public synchronized int getMissCount() { return missCount; }
+
+    // fraction of get() calls that returned a bitmap, 0 if get() was never called
+    public synchronized float getReuseRate() {
+        int total = reuseCount + missCount;
+        return total == 0 ? 0 : reuseCount / (float) total;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch( config ){
+            case ALPHA_8:   return 1;
+            case RGB_565:   return 2;
+            case ARGB_4444: return 2;
+            default:        return 4;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.lawrence.flagquizapp;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+// loads the build-time generated flag assets once per process.
+// every quiz reset shares the same FlagCatalog and FlagBundle, so resetting never touches the assets.
+// flag packs are scanned on first use, and rescanned by the settings to pick up new ones.
+public final class FlagAssets {
+
+    private static FlagCatalog catalog;     // shared by the whole process once loaded
+    private static FlagBundle bundle;
+    private static FlagSimilarityIndex similarityIndex;
+    private static FlagPacks packs;
+
+    private FlagAssets() {}
+
+    public static synchronized FlagCatalog getCatalog(Context context) {
+        if( catalog == null ){
+            long start = System.nanoTime();
+            PerfMetrics.beginSection("loadCatalog");
+            try{
+                catalog = loadCatalog(context.getAssets());
+            } finally {
+                PerfMetrics.endSection();
+            }
+            PerfMetrics.CATALOG_LOAD.record(System.nanoTime() - start);
+        }
+        return catalog;
+    }
+
+    public static synchronized FlagBundle getBundle(Context context) {
+        if( bundle == null ){
+            try{
+                bundle = FlagBundle.open(context.getAssets());
+            } catch(IOException ioe) {
+                // the bundle is generated by the build, so this only happens with a broken build
+                throw new IllegalStateException("Error loading flag bundle", ioe);
+            }
+        }
+        return bundle;
+    }
+
+    // not thread-safe itself, only use it from one thread (the UI thread)
+    public static synchronized FlagSimilarityIndex getSimilarityIndex(Context context) {
+        if( similarityIndex == null ){
+            similarityIndex = loadSimilarityIndex(context.getAssets());
+            if( similarityIndex.size() != getCatalog(context).size() ){
+                throw new IllegalStateException("Flag hash index doesn't match flag catalog");
+            }
+        }
+        return similarityIndex;
+    }
+
+    public static synchronized FlagPacks getPacks(Context context) {
+        if( packs == null ){
+            File directory = new File(context.getFilesDir(), FlagPacks.DIRECTORY_NAME);
+            packs = new FlagPacks(directory, getCatalog(context));
+            packs.scan();
+        }
+        return packs;
+    }
+
+    private static FlagCatalog loadCatalog(AssetManager assets) {
+        InputStream stream = null;
+        try{
+            stream = new BufferedInputStream(assets.open(FlagCatalog.ASSET_NAME));
+            return FlagCatalog.read(stream);
+        } catch(IOException ioe) {
+            // the catalog is generated by the build, so this only happens with a broken build
+            throw new IllegalStateException("Error loading flag catalog", ioe);
+        } finally {
+            try{
+                if( stream != null ) stream.close();
+            } catch(IOException ioe){
+                // nothing left to do with the stream
+            }
+        }
+    }
+
+    private static FlagSimilarityIndex loadSimilarityIndex(AssetManager assets) {
+        InputStream stream = null;
+        try{
+            stream = new BufferedInputStream(assets.open(FlagSimilarityIndex.ASSET_NAME));
+            return FlagSimilarityIndex.read(stream);
+        } catch(IOException ioe) {
+            // the index is generated by the build, so this only happens with a broken build
+            throw new IllegalStateException("Error loading flag hash index", ioe);
+        } finally {
+            try{
+                if( stream != null ) stream.close();
+            } catch(IOException ioe){
+                // nothing left to do with the stream
+            }
+        }
+    }
+}
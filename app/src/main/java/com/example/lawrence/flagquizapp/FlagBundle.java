@@ -0,0 +1,137 @@
+package com.example.lawrence.flagquizapp;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// every flag image packed into one uncompressed asset by the packFlagBundle task in app/build.gradle.
+// the asset is memory-mapped once, and each flag is read straight from the mapping,
+// so there is no per-flag AssetManager.open() / close() and no copying through an asset stream.
+// safe to use from several threads.
+public class FlagBundle {
+
+    public static final String ASSET_NAME = "flags.bundle";    // name of generated asset
+
+    // file layout (big-endian):
+    //   int    MAGIC
+    //   short  VERSION
+    //   int    flag count
+    //   int    offset of each flag's image from the start of the file, indexed by flag id,
+    //          plus one extra offset marking the end of the last image
+    //   byte   images
+    // NOTE: keep this in sync with the packFlagBundle task in app/build.gradle
+    static final int MAGIC = 0x464C4742;       // "FLGB"
+    static final int VERSION = 1;
+    private static final int INDEX_POSITION = 4 + 2 + 4;
+
+    private final ByteBuffer buffer;    // whole bundle, never read through its position
+    private final int size;
+
+    public FlagBundle(ByteBuffer buffer) throws IOException {
+        if( buffer.getInt(0) != MAGIC ){
+            throw new IOException("Not a flag bundle");
+        }
+        int version = buffer.getShort(4);
+        if( version != VERSION ){
+            throw new IOException("Unsupported flag bundle version: " + version);
+        }
+
+        this.buffer = buffer;
+        this.size = buffer.getInt(6);
+    }
+
+    // memory-map the bundle asset, it stays mapped for as long as the FlagBundle is reachable
+    public static FlagBundle open(AssetManager assets) throws IOException {
+        AssetFileDescriptor descriptor = assets.openFd(ASSET_NAME);
+        FileInputStream stream = descriptor.createInputStream();
+        try{
+            // the asset lives inside the apk, so only map its own range of the file
+            ByteBuffer buffer = stream.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+            return new FlagBundle(buffer);
+        } finally {
+            stream.close();     // the mapping stays valid after the file is closed
+            descriptor.close();
+        }
+    }
+
+    public int size() { return size; }
+
+    // the encoded image of a flag, as a read-only view into the mapped bundle (nothing is copied)
+    public ByteBuffer getFlag(int flagId) {
+        if( flagId < 0 || flagId >= size ){
+            throw new IndexOutOfBoundsException("No flag " + flagId + " in bundle of " + size);
+        }
+
+        int start = buffer.getInt(INDEX_POSITION + 4 * flagId);
+        int end = buffer.getInt(INDEX_POSITION + 4 * (flagId + 1));
+
+        ByteBuffer flag = buffer.duplicate();
+        flag.limit(end);
+        flag.position(start);
+        return flag.slice();
+    }
+
+    // stream over a flag's image, for decoders that only accept an InputStream.
+    // it reads from the mapping and needs no closing.
+    public InputStream openFlag(int flagId) {
+        return new ByteBufferInputStream(getFlag(flagId));
+    }
+
+    // InputStream over a ByteBuffer's remaining bytes, supports mark() / reset()
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if( length == 0 ) return 0;
+            if( !buffer.hasRemaining() ) return -1;
+
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.lawrence.flagquizapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// immutable index of every flag bundled with the app.
+// the binary form is generated at build time by the generateFlagCatalog task in app/build.gradle,
+// so the quiz never has to walk the asset directories at runtime.
+// each flag carries a bitmask of its regions, and a selection of regions is an int mask of the same
+// bits, so the flags of a selection are found by one scan the first time and a cache lookup after.
+// safe to use from several threads.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class FlagCatalog {
+
+    public static final String ASSET_NAME = "flags.catalog";   // name of generated asset
+
+    // file layout (big-endian, as written by DataOutputStream):
+    //   int    MAGIC
+    //   short  VERSION
+    //   short  region count, followed by each region name (UTF)
+    //   int    flag count, followed by one record per flag:
+    //          int id, byte region ordinal, UTF file name, UTF display name, UTF asset path
+    // NOTE: keep this in sync with the generateFlagCatalog task in app/build.gradle
+    static final int MAGIC = 0x464C4743;       // "FLGC"
+    static final int VERSION = 2;
+
+    public static final int MAX_REGIONS = 32;   // bits in a region mask
+    private static final int MAX_CACHED_MASKS = 16;
+
+    private final String[] regions;         // region names, indexed by region ordinal
+    private final int[] regionOrdinals;     // region ordinal of each flag, indexed by flag id
+    private final String[] fileNames;       // e.g. "North_America-United_States"
+    private final String[] displayNames;    // e.g. "United States"
+    private final String[] assetPaths;      // e.g. "North_America/North_America-United_States.png"
+    private final int[] regionMasks;        // bit of each flag's region, indexed by flag id
+
+    // ids of the flags of recently selected region masks, least recently used first
+    private final Map<Integer, int[]> flagIdsByMask = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+            return size() > MAX_CACHED_MASKS;
+        }
+    };
+
+    public FlagCatalog(String[] regions, int[] regionOrdinals, String[] fileNames,
+                       String[] displayNames, String[] assetPaths) {
+        int size = fileNames.length;
+        if( regionOrdinals.length != size || displayNames.length != size || assetPaths.length != size ){
+            throw new IllegalArgumentException("Flag arrays must all have the same length");
+        }
+        if( regions.length > MAX_REGIONS ){
+            throw new IllegalArgumentException("More than " + MAX_REGIONS + " regions: " + regions.length);
+        }
+
+        this.regions = regions;
+        this.regionOrdinals = regionOrdinals;
+        this.fileNames = fileNames;
+        this.displayNames = displayNames;
+        this.assetPaths = assetPaths;
+
+        this.regionMasks = new int[size];
+        for( int id=0; id < size; ++id ){
+            regionMasks[id] = 1 << regionOrdinals[id];
+        }
+    }
+
+    // read a catalog written by the build (or by write())
+    public static FlagCatalog read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+
+        if( in.readInt() != MAGIC ){
+            throw new IOException("Not a flag catalog");
+        }
+        int version = in.readShort();
+        if( version != VERSION ){
+            throw new IOException("Unsupported flag catalog version: " + version);
+        }
+
+        String[] regions = new String[in.readShort()];
+        for( int i=0; i < regions.length; ++i ){
+            regions[i] = in.readUTF();
+        }
+
+        int size = in.readInt();
+        int[] regionOrdinals = new int[size];
+        String[] fileNames = new String[size];
+        String[] displayNames = new String[size];
+        String[] assetPaths = new String[size];
+
+        for( int id=0; id < size; ++id ){
+            if( in.readInt() != id ){
+                throw new IOException("Flag catalog records out of order at " + id);
+            }
+            regionOrdinals[id] = in.readByte();
+            fileNames[id] = in.readUTF();
+            displayNames[id] = in.readUTF();
+            assetPaths[id] = in.readUTF();
+        }
+
+        return new FlagCatalog(regions, regionOrdinals, fileNames, displayNames, assetPaths);
+    }
+
+    // write this catalog in the same format the build produces
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        out.writeShort(regions.length);
+        for( String region : regions ){
+            out.writeUTF(region);
+        }
+
+        out.writeInt(fileNames.length);
+        for( int id=0; id < fileNames.length; ++id ){
+            out.writeInt(id);
+            out.writeByte(regionOrdinals[id]);
+            out.writeUTF(fileNames[id]);
+            out.writeUTF(displayNames[id]);
+            out.writeUTF(assetPaths[id]);
+        }
+
+        out.flush();
+    }
+
+    // build a catalog from asset paths of the form "<Region>/<Region>-<Country_Name>.png".
+    // regions must be listed in ordinal order.
+    public static FlagCatalog fromAssetPaths(String[] regions, List<String> paths) {
+        int size = paths.size();
+        int[] regionOrdinals = new int[size];
+        String[] fileNames = new String[size];
+        String[] displayNames = new String[size];
+        String[] assetPaths = new String[size];
+
+        for( int id=0; id < size; ++id ){
+            String path = paths.get(id);
+            String region = path.substring(0, path.indexOf('/'));
+            String fileName = path.substring(path.indexOf('/') + 1, path.lastIndexOf('.'));
+
+            regionOrdinals[id] = indexOf(regions, region);
+            if( regionOrdinals[id] < 0 ){
+                throw new IllegalArgumentException("Unknown region for flag: " + path);
+            }
+            fileNames[id] = fileName;
+            displayNames[id] = displayNameOf(fileName);
+            assetPaths[id] = path;
+        }
+
+        return new FlagCatalog(regions, regionOrdinals, fileNames, displayNames, assetPaths);
+    }
+
+    // helper method to extract country name from filename, "Region-Country_Name" -> "Country Name"
+    public static String displayNameOf(String fileName) {
+        return fileName.substring(fileName.indexOf('-') + 1).replace('_', ' ');
+    }
+
+    // mask with the bit of each of the given regions set, regions not in the catalog are ignored
+    public int getRegionMask(Collection<String> selectedRegions) {
+        int mask = 0;
+        for( int ordinal=0; ordinal < regions.length; ++ordinal ){
+            if( selectedRegions.contains(regions[ordinal]) ) mask |= 1 << ordinal;
+        }
+        return mask;
+    }
+
+    // ids of every flag in the given regions, in catalog order.
+    // the array is shared with every caller asking for the same regions, it must not be modified.
+    public int[] getFlagIds(Collection<String> selectedRegions) {
+        return getFlagIds(getRegionMask(selectedRegions));
+    }
+
+    // ids of every flag with a region in regionMask, in catalog order.
+    // scans the catalog the first time, afterwards the same shared array is returned,
+    // it must not be modified.
+    public int[] getFlagIds(int regionMask) {
+        synchronized( flagIdsByMask ){
+            int[] ids = flagIdsByMask.get(regionMask);
+            if( ids != null ) return ids;
+        }
+
+        int count = 0;
+        int[] ids = new int[fileNames.length];
+        for( int id=0; id < regionMasks.length; ++id ){
+            if( (regionMasks[id] & regionMask) != 0 ) ids[count++] = id;
+        }
+        ids = Arrays.copyOf(ids, count);
+
+        synchronized( flagIdsByMask ){
+            flagIdsByMask.put(regionMask, ids);
+        }
+        return ids;
+    }
+
+    public int size() { return fileNames.length; }
+
+    public int getRegionCount() { return regions.length; }
+
+    public String getRegion(int ordinal) { return regions[ordinal]; }
+
+    public int getRegionOrdinal(String region) { return indexOf(regions, region); }
+
+    public int getRegionOrdinalOf(int id) { return regionOrdinals[id]; }
+
+    public int getRegionMaskOf(int id) { return regionMasks[id]; }
+
+    public String getFileName(int id) { return fileNames[id]; }
+
+    public String getDisplayName(int id) { return displayNames[id]; }
+
+    public String getAssetPath(int id) { return assetPaths[id]; }
+
+    private static int indexOf(String[] array, String value) {
+        for( int i=0; i < array.length; ++i ){
+            if( array[i].equals(value) ) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.lawrence.flagquizapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.io.InputStream;
+
+// decodes flag images at (roughly) the size they are displayed at instead of full resolution.
+// the PNG bounds are read first and used to pick a power-of-2 sample size for the target size.
+// pixels are decoded into a recycled bitmap from the BitmapPool whenever one fits.
+// flags of flag packs are decoded from their pack, all others from the bundle.
+// safe to use from a background thread.
+public class FlagDecoder {
+
+    private final FlagBundle bundle;     // encoded flag images
+    private final FlagPacks packs;      // encoded images of flags beyond the bundle
+    private final BitmapPool pool;      // source of bitmaps to decode into
+
+    // written from the UI thread, read by the decoding thread
+    private volatile int targetWidth;
+    private volatile int targetHeight;
+    private volatile Bitmap.Config config = Bitmap.Config.ARGB_8888;
+
+    public FlagDecoder(FlagBundle bundle, FlagPacks packs, BitmapPool pool) {
+        this.bundle = bundle;
+        this.packs = packs;
+        this.pool = pool;
+    }
+
+    // size of the view flags are displayed in, 0 means decode at full size
+    public void setTargetSize(int width, int height) {
+        targetWidth = width;
+        targetHeight = height;
+    }
+
+    // pixel format of decoded flags, e.g. RGB_565 uses half the memory of ARGB_8888
+    public void setConfig(Bitmap.Config config) {
+        this.config = config;
+    }
+
+    public Bitmap.Config getConfig() { return config; }
+
+    // decode the flag with the given id, returns null if it can't be decoded
+    public Bitmap decode(int flagId) {
+        long start = System.nanoTime();
+        PerfMetrics.beginSection("decodeFlag");
+        try{
+            return decodeSampled(flagId);
+        } finally {
+            PerfMetrics.endSection();
+            PerfMetrics.FLAG_DECODE.record(System.nanoTime() - start);
+        }
+    }
+
+    private Bitmap decodeSampled(int flagId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // first pass only reads the image's dimensions, no pixels are allocated
+        options.inJustDecodeBounds = true;
+        decodeStream(flagId, options);
+        if( options.outWidth <= 0 || options.outHeight <= 0 ) return null;
+
+        options.inSampleSize = calculateInSampleSize(
+                options.outWidth, options.outHeight, targetWidth, targetHeight);
+        options.inPreferredConfig = config;
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;       // decoded flags go back to the pool, so they must be reusable
+
+        // before KitKat a bitmap can only be reused for an identical, unscaled decode
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || options.inSampleSize == 1 ){
+            int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = pool.get(width, height, options.inPreferredConfig);
+        }
+
+        try{
+            Bitmap bitmap = decodeStream(flagId, options);
+            if( bitmap == null ) pool.put(options.inBitmap);    // decode failed, keep the buffer
+            return bitmap;
+        } catch(IllegalArgumentException iae) {
+            // the pooled bitmap didn't fit after all, decode into a new one instead
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return decodeStream(flagId, options);
+        }
+    }
+
+    // largest power-of-2 sample size that keeps both dimensions at least as big as requested
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if( reqWidth <= 0 || reqHeight <= 0 ) return inSampleSize;
+
+        while( (width / (inSampleSize * 2)) >= reqWidth &&
+               (height / (inSampleSize * 2)) >= reqHeight ){
+            inSampleSize *= 2;
+        }
+
+        return inSampleSize;
+    }
+
+    // decode straight from the memory-mapped bundle or pack, there is no stream to close
+    private Bitmap decodeStream(int flagId, BitmapFactory.Options options) {
+        InputStream stream = packs.contains(flagId) ? packs.openFlag(flagId) : bundle.openFlag(flagId);
+        return BitmapFactory.decodeStream(stream, null, options);
+    }
+}
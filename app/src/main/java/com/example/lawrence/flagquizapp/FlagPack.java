@@ -0,0 +1,177 @@
+package com.example.lawrence.flagquizapp;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+// extra flags of one region, packed into a single file by the packFlagPack task in app/build.gradle
+// and dropped into the app's storage (see FlagPacks).
+// opening a pack only reads its header. the file is memory-mapped and names and images are read
+// from the mapping when they are asked for, so only the pages of flags actually shown are ever
+// loaded, and heap use doesn't grow with the number of flags in the pack.
+// safe to use from several threads.
+public class FlagPack {
+
+    public static final String FILE_EXTENSION = ".flagpack";
+
+    // file layout (big-endian):
+    //   int    MAGIC
+    //   short  VERSION
+    //   UTF    region, the value stored in the regions preference
+    //   UTF    title, shown in the settings
+    //   int    flag count
+    //   int    offset of each flag's display name (UTF-8) from the start of the file,
+    //          plus one extra offset marking the end of the last name
+    //   int    offset of each flag's image, plus one extra offset marking the end of the last image
+    //   byte   names
+    //   byte   images
+    // NOTE: keep this in sync with the packFlagPack task in app/build.gradle
+    static final int MAGIC = 0x464C4750;       // "FLGP"
+    static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;    // whole pack, never read through its position
+    private final String region;
+    private final String title;
+    private final int size;
+    private final int namesIndex;       // position of the name offsets
+    private final int imagesIndex;      // position of the image offsets
+    private final int firstId;          // flag id of the pack's first flag
+
+    public FlagPack(ByteBuffer buffer, int firstId) throws IOException {
+        DataInputStream in = new DataInputStream(new FlagBundle.ByteBufferInputStream(buffer.duplicate()));
+
+        Header header = readHeader(in);
+        this.buffer = buffer;
+        this.region = header.region;
+        this.title = header.title;
+        this.size = header.size;
+        this.namesIndex = buffer.capacity() - in.available();
+        this.firstId = firstId;
+
+        // the file is untrusted, so check every offset once here and never when reading a flag.
+        // e.g. a pack that is still being copied into place, or one that was edited by hand.
+        // as longs, so a huge size can't overflow the check.
+        long dataStart = namesIndex + 8L * (size + 1);
+        if( dataStart > buffer.capacity() ){
+            throw new IOException("Truncated flag pack");
+        }
+        this.imagesIndex = namesIndex + 4 * (size + 1);
+        int namesEnd = checkOffsets(buffer, namesIndex, size, (int) dataStart);
+        checkOffsets(buffer, imagesIndex, size, namesEnd);
+    }
+
+    // check that the size + 1 offsets at index never decrease, start at or after start and end
+    // within the buffer, returns the last one
+    private static int checkOffsets(ByteBuffer buffer, int index, int size, int start) throws IOException {
+        int previous = start;
+        for( int i=0; i <= size; ++i ){
+            int offset = buffer.getInt(index + 4 * i);
+            if( offset < previous || offset > buffer.capacity() ){
+                throw new IOException("Truncated flag pack");
+            }
+            previous = offset;
+        }
+        return previous;
+    }
+
+    // header of a pack file, read without mapping it, so a pack that can't be used is never mapped
+    public static Header readHeader(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 256));
+        try{
+            return readHeader(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        if( in.readInt() != MAGIC ){
+            throw new IOException("Not a flag pack");
+        }
+        int version = in.readShort();
+        if( version != VERSION ){
+            throw new IOException("Unsupported flag pack version: " + version);
+        }
+        String region = in.readUTF();
+        String title = in.readUTF();
+        int size = in.readInt();
+        if( size < 0 ){
+            throw new IOException("Bad flag pack size: " + size);
+        }
+        return new Header(region, title, size);
+    }
+
+    // memory-map a pack file, its flags get the ids from firstId on
+    public static FlagPack open(File file, int firstId) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try{
+            ByteBuffer buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            return new FlagPack(buffer, firstId);
+        } finally {
+            stream.close();     // the mapping stays valid after the file is closed
+        }
+    }
+
+    public String getRegion() { return region; }
+
+    public String getTitle() { return title; }
+
+    public int size() { return size; }
+
+    public int getFirstId() { return firstId; }
+
+    public boolean contains(int flagId) {
+        return flagId >= firstId && flagId - firstId < size;
+    }
+
+    // decoded from the mapping on every call, nothing is cached
+    public String getDisplayName(int flagId) {
+        ByteBuffer name = slice(namesIndex, flagId);
+        byte[] bytes = new byte[name.remaining()];
+        name.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    // the encoded image of a flag, as a read-only view into the mapped pack (nothing is copied)
+    public ByteBuffer getFlag(int flagId) {
+        return slice(imagesIndex, flagId);
+    }
+
+    // stream over a flag's image, it reads from the mapping and needs no closing
+    public InputStream openFlag(int flagId) {
+        return new FlagBundle.ByteBufferInputStream(getFlag(flagId));
+    }
+
+    private ByteBuffer slice(int index, int flagId) {
+        if( !contains(flagId) ){
+            throw new IndexOutOfBoundsException("No flag " + flagId + " in flag pack " + region);
+        }
+
+        int position = index + 4 * (flagId - firstId);
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(buffer.getInt(position + 4));
+        slice.position(buffer.getInt(position));
+        return slice.slice();
+    }
+
+    // what FlagPacks needs to know about a pack before registering it
+    public static class Header {
+
+        public final String region;
+        public final String title;
+        public final int size;     // flag count
+
+        Header(String region, String title, int size) {
+            this.region = region;
+            this.title = title;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.lawrence.flagquizapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// flag packs dropped into the app's flag_packs directory, each one an extra region of the quiz.
+// pack flags get ids from FIRST_PACK_ID on, above any bundled flag. the ids given to each pack file
+// are saved in the directory and never handed out again, so a pack keeps its ids across restarts,
+// and the answer stats of its flags stay with them however packs are added or removed.
+// each pack's region gets the next bit of the region mask after the bundled regions.
+// scan() picks up new packs without a restart. packs are never unregistered while the process
+// lives, so the ids of a quiz in progress stay valid.
+// safe to use from several threads: scans replace the list of packs instead of changing it.
+public class FlagPacks {
+
+    public static final String DIRECTORY_NAME = "flag_packs";
+    public static final int FIRST_PACK_ID = 1 << 12;   // bundled flags stay below, even as the app adds some
+    static final String IDS_FILE = "pack_ids";
+    private static final String TAG = "FlagPacks";
+
+    // ids file layout (big-endian):
+    //   int    IDS_MAGIC
+    //   short  IDS_VERSION
+    //   int    next free id
+    //   int    pack count, followed by each pack's UTF file name, int first id and int reserved ids
+    static final int IDS_MAGIC = 0x464C5049;   // "FLPI"
+    static final int IDS_VERSION = 1;
+    private static final int MAX_CACHED_MASKS = 16;
+
+    private final File directory;
+    private final FlagCatalog catalog;      // bundled flags, whose regions packs can't reuse
+    private volatile FlagPack[] packs = new FlagPack[0];
+    private final Set<File> registeredFiles = new HashSet<>();     // only touched by scan()
+    // last modified time of each file that could not be registered, it is only tried again once
+    // it changed, e.g. a pack that was still being copied. only touched by scan().
+    private final Map<File, Long> rejectedFiles = new HashMap<>();
+
+    // first id and number of ids reserved for each pack file name, and the next id never handed out.
+    // loaded by the first scan(), only touched by scan().
+    private Map<String, int[]> assignedIds;
+    private int nextId = FIRST_PACK_ID;
+
+    // ids of the bundled and pack flags of recently selected region masks that include packs,
+    // least recently used first. packs are never unregistered and new ones get new bits,
+    // so entries stay valid.
+    private final Map<Integer, int[]> flagIdsByMask = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+            return size() > MAX_CACHED_MASKS;
+        }
+    };
+
+    public FlagPacks(File directory, FlagCatalog catalog) {
+        if( catalog.size() > FIRST_PACK_ID ){
+            throw new IllegalArgumentException("Bundled flag ids overlap pack ids: " + catalog.size());
+        }
+        this.directory = directory;
+        this.catalog = catalog;
+    }
+
+    // register packs added to the directory since the last scan, returns how many were added.
+    // only their headers are read, and a pack is only mapped once its region has been accepted.
+    public synchronized int scan() {
+        File[] files = directory.listFiles();
+        if( files == null ) return 0;
+        Arrays.sort(files);     // same region bits for the same packs every time the app starts
+        if( assignedIds == null ) readIds();
+
+        FlagPack[] registered = packs;
+        int added = 0;
+        int firstFreeId = nextId;
+        for( File file : files ){
+            if( !file.getName().endsWith(FlagPack.FILE_EXTENSION) || registeredFiles.contains(file) ){
+                continue;
+            }
+            Long rejectedModified = rejectedFiles.get(file);
+            if( rejectedModified != null && rejectedModified == file.lastModified() ) continue;
+
+            try{
+                if( catalog.getRegionCount() + registered.length >= FlagCatalog.MAX_REGIONS ){
+                    reject(file, "No region left in the region mask for flag pack: " + file);
+                    continue;
+                }
+                FlagPack.Header header = FlagPack.readHeader(file);
+                if( catalog.getRegionOrdinal(header.region) >= 0 || getPack(header.region, registered) != null ){
+                    reject(file, "Flag pack region already exists: " + file);
+                    continue;
+                }
+
+                FlagPack pack = FlagPack.open(file, assignIds(file.getName(), header.size));
+                if( pack.size() != header.size ){
+                    throw new IOException("Flag pack changed while it was opened");
+                }
+                registered = Arrays.copyOf(registered, registered.length + 1);
+                registered[registered.length - 1] = pack;
+                registeredFiles.add(file);
+                rejectedFiles.remove(file);
+                ++added;
+            } catch(IOException ioe) {
+                Log.e(TAG, "Error opening flag pack: " + file, ioe);
+                rejectedFiles.put(file, file.lastModified());
+            }
+        }
+
+        if( nextId != firstFreeId ) writeIds();    // new ids were handed out
+        if( added > 0 ){
+            packs = registered;
+            Log.i(TAG, "Registered " + added + " flag packs, " + registered.length + " in total");
+        }
+        return added;
+    }
+
+    // log why a pack can't be registered, once until the file changes
+    private void reject(File file, String message) {
+        Log.e(TAG, message);
+        rejectedFiles.put(file, file.lastModified());
+    }
+
+    // first id of the pack file with the given name and size, the same as in earlier scans unless
+    // the pack grew beyond the ids reserved for it, then it gets new ones that were never used
+    private int assignIds(String fileName, int size) throws IOException {
+        int[] range = assignedIds.get(fileName);
+        if( range == null || range[1] < size ){
+            if( (long) nextId + size > AnswerLog.MAX_FLAG_ID + 1L ){
+                throw new IOException("No flag ids left for flag pack " + fileName);
+            }
+            range = new int[]{ nextId, size };
+            nextId += size;
+            assignedIds.put(fileName, range);
+        }
+        return range[0];
+    }
+
+    // load the ids handed out so far, starting over only if the file is unreadable
+    private void readIds() {
+        assignedIds = new HashMap<>();
+        File file = new File(directory, IDS_FILE);
+        if( !file.exists() ) return;
+
+        try{
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try{
+                if( in.readInt() != IDS_MAGIC || in.readShort() != IDS_VERSION ){
+                    throw new IOException("Not a flag pack ids file: " + file);
+                }
+                int next = in.readInt();
+                int count = in.readInt();
+                for( int i=0; i < count; ++i ){
+                    String fileName = in.readUTF();
+                    assignedIds.put(fileName, new int[]{ in.readInt(), in.readInt() });
+                }
+                nextId = Math.max(FIRST_PACK_ID, next);
+            } finally {
+                in.close();
+            }
+        } catch(IOException ioe) {
+            Log.e(TAG, "Unable to read flag pack ids, packs get new ids", ioe);
+            assignedIds.clear();
+        }
+    }
+
+    // save the ids handed out so far to a new file renamed over the old one
+    private void writeIds() {
+        File file = new File(directory, IDS_FILE);
+        File tempFile = new File(directory, IDS_FILE + ".tmp");
+        try{
+            FileOutputStream stream = new FileOutputStream(tempFile);
+            try{
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                out.writeInt(IDS_MAGIC);
+                out.writeShort(IDS_VERSION);
+                out.writeInt(nextId);
+                out.writeInt(assignedIds.size());
+                for( Map.Entry<String, int[]> entry : assignedIds.entrySet() ){
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue()[0]);
+                    out.writeInt(entry.getValue()[1]);
+                }
+                out.flush();
+                stream.getFD().sync();
+            } finally {
+                stream.close();
+            }
+
+            if( !tempFile.renameTo(file) ){
+                throw new IOException("Unable to replace " + file);
+            }
+        } catch(IOException ioe) {
+            Log.e(TAG, "Unable to save flag pack ids", ioe);
+        }
+    }
+
+    // every registered pack, in registration order
+    public FlagPack[] getPacks() {
+        return packs.clone();
+    }
+
+    // whether the flag id belongs to a registered pack, rather than to the bundled flags or to none
+    public boolean contains(int flagId) {
+        if( flagId < FIRST_PACK_ID ) return false;
+        for( FlagPack pack : packs ){
+            if( pack.contains(flagId) ) return true;
+        }
+        return false;
+    }
+
+    // mask with the bit of each of the given bundled and pack regions set
+    public int getRegionMask(Collection<String> selectedRegions) {
+        int mask = catalog.getRegionMask(selectedRegions);
+
+        FlagPack[] current = packs;
+        for( int i=0; i < current.length; ++i ){
+            if( selectedRegions.contains(current[i].getRegion()) ) mask |= getRegionBit(i);
+        }
+        return mask;
+    }
+
+    // ids of the bundled flags of regionMask followed by the flags of its packs.
+    // built the first time, afterwards the same shared array is returned while the mask stays
+    // among the MAX_CACHED_MASKS most recently used. it must not be modified.
+    public int[] getFlagIds(int regionMask) {
+        int bundledMask = regionMask & ((int) (1L << catalog.getRegionCount()) - 1);
+        int[] bundledIds = catalog.getFlagIds(bundledMask);
+        if( bundledMask == regionMask ) return bundledIds;
+
+        synchronized( flagIdsByMask ){
+            int[] ids = flagIdsByMask.get(regionMask);
+            if( ids != null ) return ids;
+
+            FlagPack[] current = packs;
+            int count = bundledIds.length;
+            for( int i=0; i < current.length; ++i ){
+                if( (regionMask & getRegionBit(i)) != 0 ) count += current[i].size();
+            }
+
+            ids = Arrays.copyOf(bundledIds, count);
+            int next = bundledIds.length;
+            for( int i=0; i < current.length; ++i ){
+                if( (regionMask & getRegionBit(i)) == 0 ) continue;
+                for( int j=0; j < current[i].size(); ++j ){
+                    ids[next++] = current[i].getFirstId() + j;
+                }
+            }
+
+            flagIdsByMask.put(regionMask, ids);
+            return ids;
+        }
+    }
+
+    // region mask bit of the pack at the given index of packs
+    private int getRegionBit(int index) {
+        return 1 << (catalog.getRegionCount() + index);
+    }
+
+    public String getDisplayName(int flagId) {
+        return getPack(flagId).getDisplayName(flagId);
+    }
+
+    // stream over a pack flag's image, it reads from the mapping and needs no closing
+    public InputStream openFlag(int flagId) {
+        return getPack(flagId).openFlag(flagId);
+    }
+
+    private FlagPack getPack(int flagId) {
+        for( FlagPack pack : packs ){
+            if( pack.contains(flagId) ) return pack;
+        }
+        throw new IndexOutOfBoundsException("No flag pack contains flag " + flagId);
+    }
+
+    private static FlagPack getPack(String region, FlagPack[] packs) {
+        for( FlagPack pack : packs ){
+            if( pack.getRegion().equals(region) ) return pack;
+        }
+        return null;
+    }
+}
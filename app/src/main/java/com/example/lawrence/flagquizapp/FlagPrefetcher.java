@@ -0,0 +1,162 @@
+package com.example.lawrence.flagquizapp;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// decodes upcoming flags on a background thread and keeps them in a size-bounded LRU cache,
+// so showing the next flag is only a cache lookup instead of a decode on the UI thread.
+// flags evicted from the cache are handed to the BitmapPool for reuse.
+public class FlagPrefetcher {
+
+    private static final String TAG = "FlagPrefetcher";
+
+    private final FlagDecoder decoder;
+    private final ExecutorService executor;     // single background thread doing the decodes
+    private final BitmapPool pool;
+    private final LruCache<Integer, Bitmap> cache;   // decoded flags, keyed by flag id
+
+    // decodes that have been queued but not yet finished, keyed by flag id.
+    // added on the UI thread, each decode removes its own entry when it is done.
+    private final ConcurrentHashMap<Integer, Future<?>> pending = new ConcurrentHashMap<>();
+
+    // bumped by clear(), guarded by this. decodes queued before the last clear() are stale,
+    // their flags go back to the pool instead of into the cache.
+    private int generation;
+
+    // cache statistics, only touched from the UI thread
+    private int hitCount;
+    private int missCount;
+
+    public FlagPrefetcher(FlagDecoder decoder, final BitmapPool pool) {
+        this.decoder = decoder;
+        this.pool = pool;
+        this.executor = Executors.newSingleThreadExecutor();
+
+        // use 1/8th of the available heap for the cache, as recommended for bitmap caches
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        this.cache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap bitmap) {
+                return bitmap.getByteCount();   // measure cache size in bytes, not entries
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue, Bitmap newValue) {
+                // flags removed by take() are about to be displayed, only evicted ones can be reused
+                if( evicted ) pool.put(oldValue);
+            }
+        };
+    }
+
+    // queue a background decode of the given flag, unless it is already cached or queued
+    public void prefetch(final int flagId) {
+        if( pending.containsKey(flagId) || cache.get(flagId) != null ) return;
+
+        final int queuedGeneration;
+        synchronized( this ){
+            queuedGeneration = generation;
+        }
+
+        FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                Bitmap bitmap = decoder.decode(flagId);
+                if( bitmap != null ) cacheUnlessStale(flagId, bitmap, queuedGeneration);
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // runs after the cache put, or on cancel, so take() finds the flag in one or the other
+                pending.remove(flagId, this);
+            }
+        };
+
+        pending.put(flagId, task);
+        executor.execute(task);
+    }
+
+    // called on the background thread once a flag is decoded
+    private synchronized void cacheUnlessStale(int flagId, Bitmap bitmap, int queuedGeneration) {
+        if( queuedGeneration != generation ){
+            pool.put(bitmap);   // the quiz it was decoded for is gone
+            return;
+        }
+        cache.put(flagId, bitmap);
+    }
+
+    // post callback to handler once every decode queued so far has finished,
+    // e.g. to show the first flag of a quiz without waiting for it on the UI thread
+    public void whenDecoded(final Handler handler, final Runnable callback) {
+        // the executor runs tasks in order on one thread, so this runs after the queued decodes
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handler.post(callback);
+            }
+        });
+    }
+
+    // remove and return the decoded flag, decoding it now if it was not prefetched in time.
+    // must be called from the UI thread.
+    public Bitmap take(int flagId) {
+        Future<?> future = pending.remove(flagId);
+
+        Bitmap bitmap = cache.remove(flagId);
+        if( bitmap != null ){
+            ++hitCount;
+            return bitmap;
+        }
+
+        ++missCount;
+
+        // if the decode is already running, waiting for it is cheaper than starting over
+        if( future != null ){
+            try{
+                future.get();
+                bitmap = cache.remove(flagId);
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException ee) {
+                Log.e(TAG, "Error prefetching flag " + flagId, ee);
+            }
+        }
+
+        return bitmap != null ? bitmap : decoder.decode(flagId);
+    }
+
+    // drop queued decodes and cached flags, e.g. when a new quiz starts.
+    // a decode that is already running finishes, but its flag goes back to the pool.
+    public void clear() {
+        for( Future<?> future : pending.values() ){
+            future.cancel(false);
+        }
+        pending.clear();
+
+        synchronized( this ){
+            ++generation;
+            cache.evictAll();
+        }
+    }
+
+    // stop the background thread, the prefetcher can't be used afterwards
+    public void shutdown() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    public int getHitCount() { return hitCount; }
+
+    public int getMissCount() { return missCount; }
+}
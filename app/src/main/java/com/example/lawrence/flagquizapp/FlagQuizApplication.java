@@ -0,0 +1,33 @@
+package com.example.lawrence.flagquizapp;
+
+import android.app.Application;
+import android.content.Context;
+
+// application class, timestamps process start for StartupMetrics and owns the process-wide answer log
+// and the adaptive sampler fed from it
+public class FlagQuizApplication extends Application {
+
+    // runs when the class is loaded, before any activity or content provider is created
+    static {
+        StartupMetrics.onProcessStart();
+    }
+
+    private AnswerLog answerLog;    // every guess, shared by all quizzes of the process
+    private AdaptiveSampler sampler;    // flag weights, only updated for flags answered since the last quiz
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        answerLog = new AnswerLog(getFilesDir());
+        sampler = new AdaptiveSampler();
+    }
+
+    public static AnswerLog getAnswerLog(Context context) {
+        return ((FlagQuizApplication) context.getApplicationContext()).answerLog;
+    }
+
+    // only use from the UI thread, and keep it up to date with AnswerLog.updateSampler()
+    public static AdaptiveSampler getSampler(Context context) {
+        return ((FlagQuizApplication) context.getApplicationContext()).sampler;
+    }
+}
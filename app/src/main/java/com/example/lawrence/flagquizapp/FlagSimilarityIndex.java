@@ -0,0 +1,206 @@
+package com.example.lawrence.flagquizapp;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// finds the flags that look most like a given flag, for hard mode distractors.
+// each flag has two 64-bit hashes computed at build time by the generateFlagHashes task in
+// app/build.gradle: a difference hash of its grayscale layout (stripes, crosses, emblems) and a
+// signature of its main colors. flags are nodes of a BK-tree over the distance between hashes, also
+// built at build time, so a query only visits a small part of the catalog and analyzes no images.
+// not thread-safe, queries reuse scratch arrays so they allocate nothing.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class FlagSimilarityIndex {
+
+    public static final String ASSET_NAME = "flags.hashes";    // name of generated asset
+
+    // file layout (big-endian):
+    //   int    MAGIC
+    //   short  VERSION
+    //   int    flag count, followed by one record per flag id:
+    //          long layout hash, long color signature,
+    //          short distance to BK-tree parent, int first child, int next sibling (-1 if none)
+    // the root of the tree is flag 0.
+    // NOTE: keep this and distance() in sync with the generateFlagHashes task in app/build.gradle
+    static final int MAGIC = 0x464C4748;       // "FLGH"
+    static final int VERSION = 1;
+    static final int COLOR_WEIGHT = 2;          // a differing main color counts as 2 layout bits
+
+    private final long[] layoutHashes;
+    private final long[] colorSignatures;
+    private final int[] edgeDistances;          // distance of each flag to its parent in the tree
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+
+    // scratch space of findNearest()
+    private final int[] stack;
+    private int[] heapFlags = new int[QuizEngine.MAX_CHOICES];     // max-heap of the best flags so far
+    private int[] heapDistances = new int[QuizEngine.MAX_CHOICES];
+
+    // decides which flags a query may return, e.g. only flags of the selected regions
+    public interface Filter {
+        boolean accept(int flagId);
+    }
+
+    FlagSimilarityIndex(long[] layoutHashes, long[] colorSignatures,
+                        int[] edgeDistances, int[] firstChildren, int[] nextSiblings) {
+        this.layoutHashes = layoutHashes;
+        this.colorSignatures = colorSignatures;
+        this.edgeDistances = edgeDistances;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.stack = new int[layoutHashes.length];
+    }
+
+    // read an index written by the build
+    public static FlagSimilarityIndex read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+
+        if( in.readInt() != MAGIC ){
+            throw new IOException("Not a flag hash index");
+        }
+        int version = in.readShort();
+        if( version != VERSION ){
+            throw new IOException("Unsupported flag hash index version: " + version);
+        }
+
+        int size = in.readInt();
+        long[] layoutHashes = new long[size];
+        long[] colorSignatures = new long[size];
+        int[] edgeDistances = new int[size];
+        int[] firstChildren = new int[size];
+        int[] nextSiblings = new int[size];
+
+        for( int id=0; id < size; ++id ){
+            layoutHashes[id] = in.readLong();
+            colorSignatures[id] = in.readLong();
+            edgeDistances[id] = in.readShort();
+            firstChildren[id] = in.readInt();
+            nextSiblings[id] = in.readInt();
+        }
+
+        return new FlagSimilarityIndex(layoutHashes, colorSignatures, edgeDistances, firstChildren, nextSiblings);
+    }
+
+    // build the tree from hashes, inserting flags in id order like the build does
+    public static FlagSimilarityIndex build(long[] layoutHashes, long[] colorSignatures) {
+        int size = layoutHashes.length;
+        int[] edgeDistances = new int[size];
+        int[] firstChildren = new int[size];
+        int[] nextSiblings = new int[size];
+        Arrays.fill(firstChildren, -1);
+        Arrays.fill(nextSiblings, -1);
+
+        FlagSimilarityIndex index = new FlagSimilarityIndex(
+                layoutHashes, colorSignatures, edgeDistances, firstChildren, nextSiblings);
+
+        for( int id=1; id < size; ++id ){
+            int node = 0;
+            while( true ){
+                int distance = index.distance(id, node);
+
+                // follow the child at the same distance, or become that child
+                int child = firstChildren[node];
+                while( child != -1 && edgeDistances[child] != distance ){
+                    child = nextSiblings[child];
+                }
+                if( child == -1 ){
+                    edgeDistances[id] = distance;
+                    nextSiblings[id] = firstChildren[node];
+                    firstChildren[node] = id;
+                    break;
+                }
+                node = child;
+            }
+        }
+
+        return index;
+    }
+
+    public int size() { return layoutHashes.length; }
+
+    // how different two flags look, 0 for identical hashes. a metric, as the BK-tree requires.
+    public int distance(int a, int b) {
+        return Long.bitCount(layoutHashes[a] ^ layoutHashes[b]) +
+               COLOR_WEIGHT * Long.bitCount(colorSignatures[a] ^ colorSignatures[b]);
+    }
+
+    // write the up to k flags most similar to flagId that the filter accepts into out,
+    // most similar first. flagId itself is never returned. returns the number of flags written.
+    public int findNearest(int flagId, int k, Filter filter, int[] out) {
+        if( k <= 0 || size() == 0 ) return 0;
+        if( heapFlags.length < k ){
+            heapFlags = new int[k];
+            heapDistances = new int[k];
+        }
+
+        int found = 0;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        while( stackSize > 0 ){
+            int node = stack[--stackSize];
+            int distance = distance(flagId, node);
+
+            if( node != flagId && (found < k || distance < heapDistances[0]) && filter.accept(node) ){
+                if( found < k ){
+                    heapFlags[found] = node;
+                    heapDistances[found] = distance;
+                    siftUp(found++);
+                } else {
+                    heapFlags[0] = node;
+                    heapDistances[0] = distance;
+                    siftDown(0, found);
+                }
+            }
+
+            // by the triangle inequality, only subtrees within the current k-th distance can do better
+            int radius = found < k ? Integer.MAX_VALUE : heapDistances[0];
+            for( int child = firstChildren[node]; child != -1; child = nextSiblings[child] ){
+                if( Math.abs(edgeDistances[child] - distance) <= radius ) stack[stackSize++] = child;
+            }
+        }
+
+        // empty the max-heap from the back, so the most similar flag ends up first
+        for( int i=found - 1; i >= 0; --i ){
+            out[i] = heapFlags[0];
+            heapFlags[0] = heapFlags[i];
+            heapDistances[0] = heapDistances[i];
+            siftDown(0, i);
+        }
+        return found;
+    }
+
+    private void siftUp(int i) {
+        while( i > 0 ){
+            int parent = (i - 1) / 2;
+            if( heapDistances[parent] >= heapDistances[i] ) return;
+            swapHeap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while( true ){
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if( left < size && heapDistances[left] > heapDistances[largest] ) largest = left;
+            if( right < size && heapDistances[right] > heapDistances[largest] ) largest = right;
+            if( largest == i ) return;
+            swapHeap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swapHeap(int i, int j) {
+        int flag = heapFlags[i];
+        int distance = heapDistances[i];
+        heapFlags[i] = heapFlags[j];
+        heapDistances[i] = heapDistances[j];
+        heapFlags[j] = flag;
+        heapDistances[j] = distance;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.lawrence.flagquizapp;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewAnimationUtils;
+import android.view.animation.Animation;
+import android.widget.ImageView;
+
+// double-buffered flag display: two stacked ImageViews of the same size, the next flag is set on the
+// hidden one, which is then revealed over the visible one and the two swap roles.
+// the reveal is a circular reveal from api 21, a cross-fade before, and runs on a hardware layer,
+// so animating it only recomposites the layers instead of redrawing the flags every frame.
+// neither view changes size, so showing a flag never triggers a layout pass.
+// frames are timed during every transition on api 16+, to check they stay within the frame budget.
+// must be used from the UI thread.
+public class FlagTransition {
+
+    private static final String TAG = "FlagTransition";
+    private static final long DURATION_MILLIS = 200;
+
+    // told when a flag is no longer drawn, so its bitmap can be reused
+    public interface Listener {
+        void onFlagHidden(Bitmap flag);
+    }
+
+    private final Listener listener;
+    private final FrameMonitor frameMonitor;    // null below api 16
+    private ImageView front;                    // view showing the current flag
+    private ImageView back;                     // view the next flag is revealed on
+    private Bitmap frontFlag;
+    private Bitmap backFlag;
+    private Animator running;
+
+    // frame timing of all transitions so far
+    private int transitionCount;
+    private int slowTransitionCount;            // transitions that dropped at least one frame
+    private int droppedFrames;
+    private long maxFrameNanos;
+
+    private final AnimatorListenerAdapter swapWhenDone = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            running = null;
+            finishSwap(true);
+        }
+    };
+
+    private final Animation.AnimationListener unlayerWhenDone = new Animation.AnimationListener() {
+        @Override
+        public void onAnimationStart(Animation animation) {}
+
+        @Override
+        public void onAnimationRepeat(Animation animation) {}
+
+        @Override
+        public void onAnimationEnd(Animation animation) {
+            front.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    };
+
+    public FlagTransition(ImageView front, ImageView back, float refreshRate, Listener listener) {
+        this.front = front;
+        this.back = back;
+        this.listener = listener;
+        this.frameMonitor = FrameMonitor.isSupported() ? new FrameMonitor(refreshRate) : null;
+
+        back.setVisibility(View.INVISIBLE);
+    }
+
+    // show the next flag, animated or at once. the previous flag is handed to the listener
+    // once it's no longer drawn.
+    public void show(Bitmap flag, boolean animate) {
+        end();
+
+        backFlag = flag;
+        back.setImageBitmap(flag);
+        back.setVisibility(View.VISIBLE);
+
+        if( !animate || front.getWidth() == 0 || frontFlag == null ){
+            finishSwap(false);
+            return;
+        }
+
+        back.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        running = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? createReveal() : createCrossFade();
+        running.setDuration(DURATION_MILLIS);
+        running.addListener(swapWhenDone);
+        if( frameMonitor != null ) frameMonitor.start();
+        running.start();
+    }
+
+    // hide both flags, handing them to the listener
+    public void clear() {
+        end();
+
+        front.setImageDrawable(null);
+        if( frontFlag != null ) listener.onFlagHidden(frontFlag);
+        frontFlag = null;
+    }
+
+    // let go of the views when they are destroyed, without handing the current flag to the listener
+    public void detach() {
+        end();
+
+        front.setImageDrawable(null);
+        frontFlag = null;
+    }
+
+    // jump to the end of a running transition
+    public void end() {
+        if( running != null ) running.end();
+    }
+
+    // shake the current flag, on a hardware layer for the duration of the animation
+    public void shake(Animation animation) {
+        end();
+        animation.setAnimationListener(unlayerWhenDone);
+        front.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        front.startAnimation(animation);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private Animator createReveal() {
+        int centerX = back.getWidth() / 2;
+        int centerY = back.getHeight() / 2;
+        float radius = (float) Math.hypot(centerX, centerY);
+        return ViewAnimationUtils.createCircularReveal(back, centerX, centerY, 0, radius);
+    }
+
+    private Animator createCrossFade() {
+        front.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        AnimatorSet crossFade = new AnimatorSet();
+        crossFade.playTogether(ObjectAnimator.ofFloat(back, View.ALPHA, 0f, 1f),
+                               ObjectAnimator.ofFloat(front, View.ALPHA, 1f, 0f));
+        return crossFade;
+    }
+
+    // the back view now shows the current flag, swap the roles of the views
+    private void finishSwap(boolean animated) {
+        if( animated && frameMonitor != null ) recordFrames();
+
+        front.setVisibility(View.INVISIBLE);
+        front.setImageDrawable(null);
+        front.setAlpha(1f);
+        front.setLayerType(View.LAYER_TYPE_NONE, null);
+        back.setLayerType(View.LAYER_TYPE_NONE, null);
+        back.setAlpha(1f);
+
+        ImageView view = front;
+        front = back;
+        back = view;
+
+        Bitmap hidden = frontFlag;
+        frontFlag = backFlag;
+        backFlag = null;
+        if( hidden != null ) listener.onFlagHidden(hidden);
+    }
+
+    // frames of the animated transition that just ended, if it was long enough to draw any
+    private void recordFrames() {
+        frameMonitor.stop();
+        if( frameMonitor.getFrameCount() < 2 ) return;
+
+        ++transitionCount;
+        droppedFrames += frameMonitor.getDroppedFrames();
+        if( frameMonitor.getDroppedFrames() > 0 ){
+            ++slowTransitionCount;
+            Log.d(TAG, "Flag transition dropped " + frameMonitor.getDroppedFrames() + " frames, longest " +
+                    frameMonitor.getMaxFrameNanos() / 1000 + " us");
+        }
+        maxFrameNanos = Math.max(maxFrameNanos, frameMonitor.getMaxFrameNanos());
+    }
+
+    public int getTransitionCount() { return transitionCount; }
+
+    public int getSlowTransitionCount() { return slowTransitionCount; }
+
+    public int getDroppedFrames() { return droppedFrames; }
+
+    public long getMaxFrameNanos() { return maxFrameNanos; }
+}
@@ -0,0 +1,68 @@
+package com.example.lawrence.flagquizapp;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+// counts the frames the UI thread drew and the ones it dropped while running, using Choreographer.
+// Choreographer needs api 16, check isSupported() before creating one.
+// must be used from the UI thread.
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class FrameMonitor implements Choreographer.FrameCallback {
+
+    private final long frameIntervalNanos;
+    private boolean running;
+    private long lastFrameNanos;
+    private int frameCount;
+    private int droppedFrames;
+    private long maxFrameNanos;     // longest time between two frames
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    // refreshRate of the display in frames per second, e.g. from Display.getRefreshRate()
+    public FrameMonitor(float refreshRate) {
+        frameIntervalNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    public void start() {
+        if( running ) return;
+        running = true;
+        lastFrameNanos = 0;
+        frameCount = 0;
+        droppedFrames = 0;
+        maxFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if( !running ) return;
+
+        // every whole frame interval beyond the first since the last frame is a frame we missed
+        if( lastFrameNanos > 0 ){
+            long frameNanos = frameTimeNanos - lastFrameNanos;
+            long missed = frameNanos / frameIntervalNanos - 1;
+            if( missed > 0 ) droppedFrames += missed;
+            maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+        }
+        lastFrameNanos = frameTimeNanos;
+        ++frameCount;
+
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public int getFrameCount() { return frameCount; }
+
+    public int getDroppedFrames() { return droppedFrames; }
+
+    public long getMaxFrameNanos() { return maxFrameNanos; }
+
+    public long getFrameIntervalNanos() { return frameIntervalNanos; }
+}
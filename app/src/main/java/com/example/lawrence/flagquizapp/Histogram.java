@@ -0,0 +1,99 @@
+package com.example.lawrence.flagquizapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// distribution of durations in power-of-2 microsecond buckets: bucket 0 counts durations under 1 us,
+// bucket i durations from 2^(i-1) up to 2^i us. recording is a few atomic adds with no locks or
+// allocation, so it can be done on hot paths and from several threads at once.
+// percentiles are estimated as the upper bound of their bucket, i.e. at most 2x too high.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class Histogram {
+
+    static final int BUCKET_COUNT = 40;     // the last bucket also counts anything longer
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public Histogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    public void record(long nanos) {
+        if( nanos < 0 ) nanos = 0;
+
+        buckets.incrementAndGet(bucketOf(nanos / 1000));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while( nanos > max && !maxNanos.compareAndSet(max, nanos) ){
+            max = maxNanos.get();
+        }
+    }
+
+    // add every sample of other to this histogram
+    public void addAll(Histogram other) {
+        for( int i=0; i < BUCKET_COUNT; ++i ){
+            buckets.addAndGet(i, other.buckets.get(i));
+        }
+        count.addAndGet(other.count.get());
+        totalNanos.addAndGet(other.totalNanos.get());
+
+        long max = maxNanos.get();
+        long otherMax = other.maxNanos.get();
+        while( otherMax > max && !maxNanos.compareAndSet(max, otherMax) ){
+            max = maxNanos.get();
+        }
+    }
+
+    public void clear() {
+        for( int i=0; i < BUCKET_COUNT; ++i ){
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    public long getCount() { return count.get(); }
+
+    public long getTotalNanos() { return totalNanos.get(); }
+
+    public long getMaxNanos() { return maxNanos.get(); }
+
+    public long getMeanNanos() {
+        long samples = count.get();
+        return samples == 0 ? 0 : totalNanos.get() / samples;
+    }
+
+    // estimated duration, in microseconds, that the given fraction (e.g. 0.99) of samples don't exceed.
+    // 0 if there are no samples.
+    public long getPercentileMicros(double fraction) {
+        long samples = count.get();
+        if( samples == 0 ) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * samples));
+        long seen = 0;
+        for( int i=0; i < BUCKET_COUNT; ++i ){
+            seen += buckets.get(i);
+            if( seen >= rank ) return Math.min(upperBoundMicros(i), maxNanos.get() / 1000);
+        }
+        return maxNanos.get() / 1000;
+    }
+
+    static int bucketOf(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);   // 0 for 0, 1 for 1, 2 for 2-3, ...
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    // largest duration counted in a bucket
+    static long upperBoundMicros(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+}
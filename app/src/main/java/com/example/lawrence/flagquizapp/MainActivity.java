@@ -21,13 +21,19 @@ public class MainActivity extends AppCompatActivity {
 
     public static final String CHOICES = "pref_numOfChoices";
     public static final String REGIONS = "pref_regionsToInclude";
+    public static final String FLAG_QUALITY = "pref_flagQuality";
+    public static final String RANDOM_SEED = "pref_randomSeed";
+    public static final String ADAPTIVE = "pref_adaptiveDifficulty";
+    public static final String HARD_MODE = "pref_hardMode";
+    public static final String SPEED_RUN = "pref_speedRun";
 
     private boolean phoneDevice = true;             // force portrait orientation if device is phone.
-    private boolean preferencesChanged = true;      // flag var if preferences changed.
+    private QuizResetCoordinator resetCoordinator;  // turns preference changes into quiz resets
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.onActivityCreated();    // start timing until the first flag is visible
         setContentView(R.layout.activity_main);
 
         // set menu/tool/action bar
@@ -38,6 +44,9 @@ public class MainActivity extends AppCompatActivity {
         // "this" refers to the current Context/Activity
         PreferenceManager.setDefaultValues(this, R.xml.preferences, false);
 
+        // batch preference changes into one quiz reset once the user is done with the settings
+        resetCoordinator = new QuizResetCoordinator(this, PreferenceManager.getDefaultSharedPreferences(this));
+
         // register listener for SharedPreferences changes
         // listeners will notified MainActivity when user updates preferences
         // via updateGuessRows() or updateRegions() in MainActivityFragment.java
@@ -63,22 +72,18 @@ public class MainActivity extends AppCompatActivity {
     protected void onStart(){
         super.onStart();
 
-        // if user changed from default prefs, then rebuild a new quizFragment.
-        if( preferencesChanged ){
-            // now that default prefs have been set, initialize MainActivityFragment and start quiz
-            MainActivityFragment quizFragment =
-                    (MainActivityFragment) getSupportFragmentManager()
-                            .findFragmentById(R.id.quizFragment);
-
-            quizFragment.updateGuessRows(
-                    PreferenceManager.getDefaultSharedPreferences(this)
-            );
-            quizFragment.updateRegions(
-                    PreferenceManager.getDefaultSharedPreferences(this)
-            );
-            quizFragment.resetQuiz();
-            preferencesChanged = false;         // reset flag var
-        }
+        // now that default prefs have been set, initialize MainActivityFragment and start quiz.
+        // after that, the quiz is only rebuilt if the user actually changed the quiz settings.
+        MainActivityFragment quizFragment =
+                (MainActivityFragment) getSupportFragmentManager()
+                        .findFragmentById(R.id.quizFragment);
+        resetCoordinator.onStart(quizFragment);
+    }
+
+    @Override
+    protected void onStop(){
+        super.onStop();
+        resetCoordinator.onStop();
     }
 
     // show options menu if app is running on a phone or in portrait mode
@@ -89,10 +94,14 @@ public class MainActivity extends AppCompatActivity {
         // get current orientation
         int orientation = getResources().getConfiguration().orientation;
 
-        // if portrait, then inflate options menu xml
-        if( orientation == Configuration.ORIENTATION_PORTRAIT ){
+        // settings are only on the menu in portrait, in landscape they are shown next to the quiz.
+        // debug builds also get the metrics item, in both orientations.
+        boolean portrait = orientation == Configuration.ORIENTATION_PORTRAIT;
+        if( portrait || BuildConfig.DEBUG ){
             // inflate menu_menu.xml
             getMenuInflater().inflate(R.menu.menu_main, menu);
+            menu.findItem(R.id.action_settings).setVisible(portrait);
+            menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
             return true;    // returning true means menu should be displayed
         }
 
@@ -102,6 +111,12 @@ public class MainActivity extends AppCompatActivity {
     // onOptionsItemSelected is called when menut item is selected
     @Override
     public boolean onOptionsItemSelected(MenuItem item){
+        // launch MetricsActivity when "Performance Metrics" is selected (debug builds only)
+        if( item.getItemId() == R.id.action_metrics ){
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
+
         // launch SettingsActivity when "Settings" is selected on options menu
         Intent intent = new Intent(this, SettingsActivity.class);
         startActivity(intent);
@@ -115,15 +130,12 @@ public class MainActivity extends AppCompatActivity {
         // callback for when user changes the apps' preferences
         @Override
         public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            preferencesChanged = true;      // user changed app settings
-
-            MainActivityFragment quizFragment =
-                    (MainActivityFragment) getSupportFragmentManager().findFragmentById(R.id.quizFragment);
-
-            if( key.equals(CHOICES) ){
-                // preferences changed # of buttons/choices for user to choose from
-                quizFragment.updateGuessRows(sharedPreferences);
-                quizFragment.resetQuiz();
+            // user changed app settings, the coordinator resets the quiz once they are committed.
+            // the number of choices, regions and every other quiz setting are read from the
+            // preferences at that point, so nothing has to be updated here.
+            if( key.equals(CHOICES) || key.equals(FLAG_QUALITY) || key.equals(RANDOM_SEED) ||
+                key.equals(ADAPTIVE) || key.equals(HARD_MODE) || key.equals(SPEED_RUN) ){
+                resetCoordinator.requestReset();
             } else if( key.equals(REGIONS) ){
                 // preferences changed for which countries flags to include
                 // preferences are key-val pairs
@@ -135,8 +147,7 @@ public class MainActivity extends AppCompatActivity {
 
                 if( regions != null && regions.size() > 0 ){
                     // update to include more regions
-                    quizFragment.updateRegions(sharedPreferences);
-                    quizFragment.resetQuiz();
+                    resetCoordinator.requestReset();
                 } else {
                     // set North America as default
 
@@ -159,8 +170,6 @@ public class MainActivity extends AppCompatActivity {
                     // notify user
                 }
             }
-
-            Toast.makeText(MainActivity.this, R.string.restarting_quiz, Toast.LENGTH_SHORT).show();
         }
     };
 }
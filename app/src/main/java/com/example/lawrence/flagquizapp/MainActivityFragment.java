@@ -1,71 +1,148 @@
 package com.example.lawrence.flagquizapp;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.content.res.AssetManager;
+import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
-import android.view.ViewAnimationUtils;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.Button;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.SecureRandom;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Set;
 
 public class MainActivityFragment extends Fragment {
 
     private static final String TAG = "FlagQuizActivity";
     private static final int FLAGS_IN_QUIZ = 10;
+    private static final int PREFETCH_COUNT = 3;    // num of upcoming flags decoded in background
+    private static final int SPEED_RUN_PREFETCH_COUNT = 6;  // more, since a speed run has no delay
+    private static final int POOL_SIZE = 4;         // num of spare flag bitmaps kept for reuse
 
     // View widgets
     private LinearLayout quizLinearLayout; // layout that contains the quiz
     private TextView questionNumberTextView; // shows current question #
-    private ImageView flagImageView; // displays a flag
+    private FrameLayout flagFrameLayout; // holds the two stacked flag views
+    private FlagTransition flagTransition; // shows each new flag over the previous one
     private LinearLayout[] guessLinearLayouts; // rows of answer Buttons
+    private Button[] guessButtons; // every answer Button, indexed by row * 2 + col
+    private int[] guessFlagIds; // flag id each answer Button stands for, -1 if unused
+    private String[] guessLabels; // text of each answer Button
+    private int[] nextLabelIds; // answer choices of the next question, looked up ahead of time
+    private String[] nextLabels; // and their labels
     private TextView answerTextView; // displays correct answer
 
-    private List<String> fileNameList; // flag file names
-    private List<String> quizCountriesList; // countries in current quiz
+    private FlagCatalog catalog; // every flag bundled with the app, null until loaded
+    private FlagSimilarityIndex similarityIndex; // finds look-alike flags, null until loaded
+    private FlagPacks packs; // extra flags dropped into app storage, null until loaded
+    private QuizEngine engine; // picks quiz flags and answer choices
     private Set<String> regionsSet; // world regions in current quiz
-    private String correctAnswer; // correct country for the current flag
+    private int regionMask; // regionsSet as a mask of catalog and pack region bits
+    private boolean regionMaskComputed; // false until regionMask matches regionsSet
+    private Bitmap currentFlag; // bitmap of the current flag
+    private String[] correctAnswerTexts; // "<Country Name>!" for each bundled flag, built once per catalog
 
     // used to display stats at end of quiz
     private int totalGuesses;
     private int correctAnswers;
     private int guessRows;
 
-    private SecureRandom random; // used to randomize the quiz
+    private XoshiroRandom random; // used to randomize the quiz, reseeded for every quiz
+    private XoshiroRandom seedSource; // picks the seed of each quiz unless a fixed seed is set
+    private boolean useFixedSeed; // replay mode, every quiz starts from fixedSeed
+    private long fixedSeed;
+    private boolean adaptive; // draw flags weighted by past answers instead of uniformly
+    private AdaptiveSampler sampler; // weights flags in adaptive mode, kept up to date between quizzes
+    private boolean hardMode; // distractors look like the correct flag instead of being random
+    private int speedRunSeconds; // time limit of a speed run, 0 for a normal quiz
+    private long speedRunStartNanos; // System.nanoTime() when the first flag of the speed run was shown
+    private FrameMonitor frameMonitor; // counts dropped frames during a speed run, null below api 16
+    private long maxSwapNanos; // slowest switch to the next flag in this quiz
+    private String pendingResults; // results of a speed run that ended while in the background
     private Handler handler; // used to delay loading next flag
     private Animation shakeAnimation; // animation for incorrect guess
+    private BitmapPool pool; // recycles bitmaps of flags no longer shown
+    private FlagDecoder decoder; // decodes flags at the size they are displayed, null until loaded
+    private FlagPrefetcher prefetcher; // decodes upcoming flags in background, null until loaded
+    private Bitmap.Config flagConfig = Bitmap.Config.ARGB_8888; // pixel format of decoded flags
+    private AnswerLog answerLog; // persists every guess
+    private long questionShownMillis; // SystemClock.elapsedRealtime() when the current flag was shown
+
+    private QuizResetCoordinator.QuizSettings quizSettings; // settings of the quiz in progress
+    private boolean destroyed; // set once the fragment is really destroyed, not just its view
+    private boolean resetPending; // resetQuiz() was called before the flags were loaded
+    private boolean answered; // current question was answered correctly, next flag is coming
+    private int wrongGuesses; // bit i is set if choice i was guessed wrong on the current question
+    private long lastRebindNanos = -1; // time to show the retained quiz on a recreated view
+    private int quizGeneration; // incremented by every reset, so stale callbacks can be ignored
+    private boolean startupTimed; // true once the first flag after view creation was shown
+    private long nextFlagStartNanos = -1; // correct tap (or end of the delay after it) the next flag is timed from
+    private boolean nextFlagDrawPending; // nextFlagDrawnListener is waiting for the next flag to be drawn
+
+    // time spent handling answer taps
+    private int tapCount;
+    private long lastTapNanos;
+    private long maxTapNanos;
+    private long totalTapNanos;
+
+    // initialize the quiz state, which outlives the views
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // keep this fragment, and with it the quiz in progress and its decoded flags,
+        // when the activity is recreated for a configuration change such as rotation on tablets.
+        // onCreate() and onDestroy() then only run once per quiz session, onCreateView() per view.
+        setRetainInstance(true);
+
+        random = new XoshiroRandom();
+        seedSource = new XoshiroRandom();
+        engine = new QuizEngine(random);
+        handler = new Handler();
+        pool = new BitmapPool(POOL_SIZE);
+        answerLog = FlagQuizApplication.getAnswerLog(getActivity());
+        sampler = FlagQuizApplication.getSampler(getActivity());
+
+        guessFlagIds = new int[QuizEngine.MAX_CHOICES];
+        Arrays.fill(guessFlagIds, -1);
+        guessLabels = new String[QuizEngine.MAX_CHOICES];
+        nextLabelIds = new int[QuizEngine.MAX_CHOICES];
+        Arrays.fill(nextLabelIds, -1);
+        nextLabels = new String[QuizEngine.MAX_CHOICES];
+
+        loadFlagAssets(getActivity().getApplicationContext());
+    }
 
-    // inflates GUI and initialize most of the instance variables.
+    // inflates GUI and binds it to the quiz state, which may already be in progress.
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         super.onCreateView(inflater, container, savedInstanceState);
+        long createStart = System.nanoTime();
 
         View view = inflater.inflate(R.layout.fragment_main, container, false);
         // inflate takes layout resource id,
@@ -75,11 +152,6 @@ public class MainActivityFragment extends Fragment {
         // fragment to appropriate host Activity's ViewGroup.
         // Store view to local variable that will be return by onCreateView()
 
-        fileNameList = new ArrayList<>();
-        quizCountriesList = new ArrayList<>();
-        random = new SecureRandom();
-        handler = new Handler();
-
         // load shake animation, repeat animation 3 times.
         shakeAnimation = AnimationUtils.loadAnimation(getActivity(), R.anim.incorrect_shake);
         shakeAnimation.setRepeatCount(3);
@@ -87,7 +159,12 @@ public class MainActivityFragment extends Fragment {
         // get refs to GUI widgets
         quizLinearLayout = (LinearLayout) view.findViewById(R.id.quizLinearLayout);
         questionNumberTextView = (TextView) view.findViewById(R.id.questionNumberTextView);
-        flagImageView = (ImageView) view.findViewById(R.id.flagImageView);
+        flagFrameLayout = (FrameLayout) view.findViewById(R.id.flagFrameLayout);
+        flagTransition = new FlagTransition(
+                (ImageView) view.findViewById(R.id.flagImageView),
+                (ImageView) view.findViewById(R.id.nextFlagImageView),
+                getActivity().getWindowManager().getDefaultDisplay().getRefreshRate(),
+                flagHiddenListener);
         guessLinearLayouts = new LinearLayout[4];
         guessLinearLayouts[0] = (LinearLayout) view.findViewById(R.id.row1LinearLayout);
         guessLinearLayouts[1] = (LinearLayout) view.findViewById(R.id.row2LinearLayout);
@@ -95,123 +172,467 @@ public class MainActivityFragment extends Fragment {
         guessLinearLayouts[3] = (LinearLayout) view.findViewById(R.id.row4LinearLayout);
         answerTextView = (TextView) view.findViewById(R.id.answerTextView);
 
-        // configure listeners for buttons
-        for( LinearLayout row : guessLinearLayouts ){
-            for( int col=0; col < row.getChildCount(); ++col ){
-                Button button = (Button) row.getChildAt(col);
+        // configure listeners for buttons, each tagged with its index so a tap can look up its flag id
+        guessButtons = new Button[QuizEngine.MAX_CHOICES];
+        for( int row=0; row < guessLinearLayouts.length; ++row ){
+            for( int col=0; col < guessLinearLayouts[row].getChildCount(); ++col ){
+                int index = (row * 2) + col;
+                Button button = (Button) guessLinearLayouts[row].getChildAt(col);
+                button.setTag(index);
                 button.setOnClickListener(guessButtonListener);
+                guessButtons[index] = button;
             }
         }
-
-        // set questionNumberTextView using string resource
-        // on first run it will be "Question 1 of 10"
-        questionNumberTextView.setText(getString(R.string.question, 1, FLAGS_IN_QUIZ));
+        if( guessRows > 0 ) showGuessRows();
+        nextFlagDrawPending = false;    // any listener went away with the old view
+
+        if( currentFlag != null ){
+            // view recreated after a configuration change, show the retained quiz as it was
+            rebindQuiz(createStart);
+        } else {
+            // show placeholder until the flags are loaded and the first flag is decoded
+            showLoading();
+        }
 
         // return the fragment's view for display
         return view;
     }
 
+    // load the flag catalog and bundle on a background thread so the first frame isn't delayed,
+    // then start the quiz if it was requested in the meantime
+    private void loadFlagAssets(final Context context) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final FlagCatalog loadedCatalog = FlagAssets.getCatalog(context);
+                final FlagBundle loadedBundle = FlagAssets.getBundle(context);
+                final FlagSimilarityIndex loadedIndex = FlagAssets.getSimilarityIndex(context);
+                final FlagPacks loadedPacks = FlagAssets.getPacks(context);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if( destroyed ) return;     // quiz closed while loading
+
+                        catalog = loadedCatalog;
+                        similarityIndex = loadedIndex;
+                        packs = loadedPacks;
+                        correctAnswerTexts = buildCorrectAnswerTexts(catalog);
+                        decoder = new FlagDecoder(loadedBundle, packs, pool);
+                        decoder.setConfig(flagConfig);
+                        prefetcher = new FlagPrefetcher(decoder, pool);
+
+                        if( resetPending ) resetQuiz();
+                    }
+                });
+            }
+        }, "FlagAssetsLoader").start();
+    }
+
+    // format the text shown for a correct answer once per catalog, so tapping allocates nothing
+    private static String[] buildCorrectAnswerTexts(FlagCatalog catalog) {
+        String[] texts = new String[catalog.size()];
+        for( int id=0; id < texts.length; ++id ){
+            texts[id] = catalog.getDisplayName(id) + "!";
+        }
+        return texts;
+    }
+
+    // country name of a bundled or pack flag
+    private String getDisplayName(int flagId) {
+        return packs.contains(flagId) ? packs.getDisplayName(flagId) : catalog.getDisplayName(flagId);
+    }
+
+    // text shown when the flag was guessed, pack flags are too many to format in advance
+    private String getCorrectAnswerText(int flagId) {
+        return packs.contains(flagId) ? packs.getDisplayName(flagId) + "!" : correctAnswerTexts[flagId];
+    }
+
+    // lightweight placeholder shown while the flags load or the first flag decodes
+    private void showLoading() {
+        questionNumberTextView.setText(R.string.loading_quiz);
+        answerTextView.setText("");
+        flagTransition.clear();     // hands the current flag back to the pool
+        currentFlag = null;
+        disableButtons();
+    }
+
+    // a flag that is no longer drawn, its buffer can be decoded into
+    private final FlagTransition.Listener flagHiddenListener = new FlagTransition.Listener() {
+        @Override
+        public void onFlagHidden(Bitmap flag) {
+            pool.put(flag);
+        }
+    };
+
+    // show the results of a speed run that ran out while the app was in the background
+    @Override
+    public void onResume() {
+        super.onResume();
+        if( pendingResults != null ){
+            showResults(pendingResults);
+            pendingResults = null;
+        }
+    }
+
+    // write buffered guesses while the app may be about to be killed in the background
+    @Override
+    public void onStop() {
+        super.onStop();
+        answerLog.flush();
+    }
+
+    // detach the current flag from the view, the bitmap itself is kept for the next view
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        flagTransition.detach();
+    }
+
+    // stop background decoding and release cached and pooled flags along with the quiz.
+    // not called for configuration changes since the fragment is retained.
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        stopSpeedRun();
+        handler.removeCallbacksAndMessages(null);
+        if( prefetcher != null ) prefetcher.shutdown();
+
+        pool.put(currentFlag);
+        currentFlag = null;
+        pool.clear();
+    }
+
+    // show the question, flag, answer buttons and feedback of the retained quiz on a new view,
+    // without resetting the quiz or decoding anything
+    private void rebindQuiz(final long rebindStart) {
+        showQuestionNumber();
+        flagTransition.show(currentFlag, false);
+        bindGuessButtons();
+
+        if( answered ){
+            answerTextView.setText(getCorrectAnswerText(engine.getCorrectFlag()));
+            answerTextView.setTextColor(Color.GREEN);
+        } else if( wrongGuesses != 0 ){
+            answerTextView.setText(R.string.incorrect_answer);
+            answerTextView.setTextColor(Color.RED);
+        }
+
+        // report how long it took until the rebound quiz is drawn
+        final ViewTreeObserver observer = flagFrameLayout.getViewTreeObserver();
+        observer.addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        if( observer.isAlive() ) observer.removeOnPreDrawListener(this);
+                        lastRebindNanos = System.nanoTime() - rebindStart;
+                        Log.i(TAG, "Quiz rebound after configuration change in " +
+                                lastRebindNanos / 1000 + " us");
+                        return true;
+                    }
+                });
+    }
+
+    // time taken to show the retained quiz on a recreated view, in nanoseconds, -1 if never rebound
+    public long getLastRebindNanos() { return lastRebindNanos; }
+
+    public QuizResetCoordinator.QuizSettings getQuizSettings() { return quizSettings; }
+
+    public void setQuizSettings(QuizResetCoordinator.QuizSettings quizSettings) {
+        this.quizSettings = quizSettings;
+    }
+
     // set up & start next quiz
     public void resetQuiz() {
-        // use AssetManager to get img file names
-        AssetManager assets = getActivity().getAssets();
-        fileNameList.clear();       // clear list after we load them.
-
+        long resetStart = System.nanoTime();
+        PerfMetrics.RESETS.incrementAndGet();
+        PerfMetrics.beginSection("resetQuiz");
         try{
-            // load all flag image files from selected regions
-            for(String region : regionsSet){
-                String[] paths = assets.list(region);
+            startQuiz();
+        } finally {
+            PerfMetrics.endSection();
+            PerfMetrics.QUIZ_RESET.record(System.nanoTime() - resetStart);
+        }
+    }
 
-                // remove the ".png" file extension
-                for(String path : paths){
-                    fileNameList.add(path.replace(".png", ""));
-                }
-            }
-        } catch (IOException ioe) {
-            Log.e(TAG, "Error loading image file names: ", ioe);
+    // clear the previous quiz and start a new one, timed by resetQuiz()
+    private void startQuiz() {
+        ++quizGeneration;       // ignore callbacks of any earlier quiz
+        handler.removeCallbacks(loadNextFlagRunnable);
+        handler.removeCallbacks(prepareNextQuestionRunnable);
+        stopSpeedRun();
+        pendingResults = null;
+        nextFlagStartNanos = -1;
+        showLoading();
+
+        // flags are still loading, the quiz starts as soon as they are ready
+        if( catalog == null ){
+            resetPending = true;
+            return;
+        }
+        resetPending = false;
+
+        // get ids of all flags from selected regions from the catalog built at compile time,
+        // no directory listing needed since the catalog is loaded once per process.
+        // regions of flag packs add the ids of their flags, the packs are scanned by the settings.
+        // the ids of each region mask are cached, so a selection used before costs a lookup.
+        if( !regionMaskComputed ){
+            regionMask = packs.getRegionMask(regionsSet);
+            regionMaskComputed = true;
         }
+        int[] flagIds = packs.getFlagIds(regionMask);
+        if( flagIds.length == 0 ) flagIds = selectDefaultRegion();
 
         // clear previous games
+        PerfMetrics.onQuizStarted();
         correctAnswers = 0;
         totalGuesses = 0;
-        quizCountriesList.clear();
-
-        int flagCounter = 1;
-        int numOfFlags = fileNameList.size();
+        maxSwapNanos = 0;
+        prefetcher.clear();
+
+        // every random choice of the quiz comes from this seed, so logging it lets us replay the quiz
+        long seed = useFixedSeed ? fixedSeed : seedSource.nextLong();
+        random.setSeed(seed);
+        Log.i(TAG, "Starting quiz with seed " + seed);
+
+        // pick 10 random flags for this quiz, in adaptive mode favoring those the user finds hard.
+        // a speed run goes on until time runs out, so it may use every flag. the engine only draws
+        // a window of them ahead of the current question, so starting one costs the same as a quiz.
+        int flagsInQuiz = speedRunSeconds > 0 ? flagIds.length : FLAGS_IN_QUIZ;
+        if( adaptive ){
+            answerLog.updateSampler(sampler);
+            engine.reset(flagIds, flagIds.length, flagsInQuiz, sampler);
+            Log.d(TAG, "Adaptive quiz, flag weights rebuilt " + sampler.getRebuildCount() + " times");
+        } else {
+            engine.reset(flagIds, flagIds.length, flagsInQuiz);
+        }
 
-        // add 10 random file names to quizCounter
-        while( flagCounter <= FLAGS_IN_QUIZ ){
-            int randIdx = random.nextInt(numOfFlags);
+        prepareNextQuestion();
 
-            String filename = fileNameList.get(randIdx);
+        // decode the first flag in background, and start the quiz once it's ready
+        updateTargetSize();
+        int first = engine.getUpcomingFlag(1);
+        if( first >= 0 ) prefetcher.prefetch(first);
 
-            // if region enabled and hasn't already been chosen
-            if( !quizCountriesList.contains(filename) ){
-                quizCountriesList.add(filename);
-                ++flagCounter;
+        final int quiz = quizGeneration;
+        prefetcher.whenDecoded(handler, new Runnable() {
+            @Override
+            public void run() {
+                // skip if the quiz was reset again or closed in the meantime
+                if( quiz == quizGeneration && !destroyed && engine.hasNextQuestion() ){
+                    loadNextFlag();
+                }
             }
-        }
-
-        // start quiz by loading first flag
-        loadNextFlag();
+        });
     }
 
     // method to load next flag after correct guess
     private void loadNextFlag() {
-        String nextImage = quizCountriesList.remove(0);
-        correctAnswer = nextImage;      // update correct answer for this flag
+        long swapStart = System.nanoTime();
+        PerfMetrics.beginSection("loadNextFlag");
+
+        // pick next flag and its answer choices
+        int correct = engine.nextQuestion(guessRows * 2, hardMode ? similarityIndex : null);
+        answered = false;
+        wrongGuesses = 0;
         answerTextView.setText("");     // clear "correct" or "incorrect"
 
-        // display current question number
-        questionNumberTextView.setText(getString(R.string.question, correctAnswers+1, FLAGS_IN_QUIZ));
+        questionShownMillis = SystemClock.elapsedRealtime();
+
+        showQuestionNumber();
+        updateTargetSize();
+
+        // get next image, normally already decoded in background while the previous flag was shown,
+        // and reveal it over the previous flag, which goes back to the pool once it's hidden.
+        // a speed run swaps at once, without waiting for an animation.
+        // if the decode fell behind the user (a prefetch miss, see getMissCount()) take() waits for
+        // it here on the UI thread, there is nothing to show until it's done.
+        currentFlag = prefetcher.take(correct);
+        flagTransition.show(currentFlag, speedRunSeconds == 0);
+
+        // record startup time once the first flag has actually been drawn
+        if( !startupTimed ){
+            startupTimed = true;
+            final ViewTreeObserver observer = flagFrameLayout.getViewTreeObserver();
+            observer.addOnPreDrawListener(
+                    new ViewTreeObserver.OnPreDrawListener() {
+                        @Override
+                        public boolean onPreDraw() {
+                            if( observer.isAlive() ) observer.removeOnPreDrawListener(this);
+                            StartupMetrics.onFirstFlagVisible();
+                            return true;
+                        }
+                    });
+        }
+
+        // start decoding the upcoming flags during the delay before they are needed.
+        // a speed run has no delay, so it keeps more flags in the pipeline to stay ahead of the user.
+        int prefetchCount = speedRunSeconds > 0 ? SPEED_RUN_PREFETCH_COUNT : PREFETCH_COUNT;
+        for( int i=1; i <= prefetchCount; ++i ){
+            int upcoming = engine.getUpcomingFlag(i);
+            if( upcoming >= 0 ) prefetcher.prefetch(upcoming);
+        }
+
+        // add 2, 4, etc num of guess buttons, one of them is the correct answer.
+        // bind each button to a flag, buttons beyond the number of flags stay unused.
+        // the labels were normally looked up by prepareNextQuestion() while the previous flag was
+        // shown, so only setting the texts (and the layout pass that follows) is left for the swap.
+        for( int choice=0; choice < guessFlagIds.length; ++choice ){
+            int flagId = choice < engine.getChoiceCount() ? engine.getChoice(choice) : -1;
+            guessFlagIds[choice] = flagId;
+            if( flagId < 0 ){
+                guessLabels[choice] = "";
+            } else if( nextLabelIds[choice] == flagId ){
+                guessLabels[choice] = nextLabels[choice];
+            } else {
+                guessLabels[choice] = getDisplayName(flagId);
+            }
+        }
+        bindGuessButtons();
 
-        // extract region from image's name
-        String region = nextImage.substring(0, nextImage.indexOf('-'));
+        // get the following question ready once this one has been drawn
+        handler.post(prepareNextQuestionRunnable);
 
-        // load next image from AssetManager
-        AssetManager assets = getActivity().getAssets();
+        // time until the next flag is drawn, from the tap or from the end of the delay after it
+        if( engine.getQuestionNumber() > 1 ){
+            if( nextFlagStartNanos < 0 ) nextFlagStartNanos = swapStart;
+            if( !nextFlagDrawPending ){
+                nextFlagDrawPending = true;
+                flagFrameLayout.getViewTreeObserver().addOnPreDrawListener(nextFlagDrawnListener);
+            }
+        }
 
-        InputStream stream = null;  // local variable don't get auto initialized to null.
-        try{
-            stream = assets.open(region + "/" + nextImage + ".png");
-            Drawable flag = Drawable.createFromStream(stream, nextImage);
-            flagImageView.setImageDrawable(flag);
-        } catch(IOException ioe) {
-            Log.e(TAG, "Error loading: " + nextImage, ioe);
-        } finally {
-            try{
-                if( stream != null ) stream.close();
-            } catch(Exception e){
-                Log.e(TAG, "Error closing stream: ", e);
+        maxSwapNanos = Math.max(maxSwapNanos, System.nanoTime() - swapStart);
+        if( speedRunSeconds > 0 && engine.getQuestionNumber() == 1 ) startSpeedRun();
+        PerfMetrics.endSection();
+    }
+
+    // records tap to next flag visible, kept in a field so showing a flag doesn't allocate a listener
+    private final ViewTreeObserver.OnPreDrawListener nextFlagDrawnListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            flagFrameLayout.getViewTreeObserver().removeOnPreDrawListener(this);
+            nextFlagDrawPending = false;
+            if( nextFlagStartNanos >= 0 ){
+                PerfMetrics.TAP_TO_NEXT_FLAG.record(System.nanoTime() - nextFlagStartNanos);
+                nextFlagStartNanos = -1;
             }
+            return true;
+        }
+    };
+
+    // display current question number, a speed run has no fixed number of questions
+    private void showQuestionNumber() {
+        if( speedRunSeconds > 0 ){
+            questionNumberTextView.setText(getString(R.string.speed_run_question, engine.getQuestionNumber()));
+        } else {
+            questionNumberTextView.setText(
+                    getString(R.string.question, engine.getQuestionNumber(), engine.getQuizLength()));
         }
+    }
 
-        // randomize filenames
-        Collections.shuffle(fileNameList);
+    // start the clock and frame counting once the first flag of a speed run is shown
+    private void startSpeedRun() {
+        speedRunStartNanos = System.nanoTime();
+        handler.postDelayed(endSpeedRunRunnable, speedRunSeconds * 1000L);
 
-        // put correct answer at end of fileNameList
-        int correct = fileNameList.indexOf(correctAnswer);
-        fileNameList.add(fileNameList.remove(correct));
+        if( FrameMonitor.isSupported() ){
+            if( frameMonitor == null ){
+                frameMonitor = new FrameMonitor(
+                        getActivity().getWindowManager().getDefaultDisplay().getRefreshRate());
+            }
+            frameMonitor.start();
+        }
+    }
 
-        // add 2, 4, etc num of guess buttons
-        for( int row=0; row < guessRows; ++row ){
-            for( int col=0; col < guessLinearLayouts[row].getChildCount(); ++col ){
-                // get refs to button so that it can be configured
-                Button newGuessButton = (Button) guessLinearLayouts[row].getChildAt(col);
-                newGuessButton.setEnabled(true);
+    private void stopSpeedRun() {
+        handler.removeCallbacks(endSpeedRunRunnable);
+        if( frameMonitor != null ) frameMonitor.stop();
+    }
 
-                // set text on button to country name
-                String filename = fileNameList.get((row * 2) + col);
-                newGuessButton.setText(getCountryName(filename));
+    // time is up or every flag was shown, report how fast the user went
+    private void endSpeedRun() {
+        stopSpeedRun();
+        PerfMetrics.onQuizEnded();
+        PerfMetrics.QUIZZES_FINISHED.incrementAndGet();
+        answered = true;
+        disableButtons();
+
+        double seconds = (System.nanoTime() - speedRunStartNanos) / 1e9;
+        double flagsPerSecond = correctAnswers / seconds;
+        String results = getString(R.string.speed_run_results, correctAnswers, seconds, flagsPerSecond);
+        if( frameMonitor != null ){
+            results += "\n" + getString(R.string.speed_run_dropped_frames, frameMonitor.getDroppedFrames());
+        }
+
+        Log.i(TAG, "Speed run: " + correctAnswers + " flags in " + seconds + " s, " +
+                flagsPerSecond + " flags/s, " +
+                (frameMonitor != null ? frameMonitor.getDroppedFrames() + " of " +
+                        (frameMonitor.getFrameCount() + frameMonitor.getDroppedFrames()) + " frames dropped, " : "") +
+                "slowest flag swap " + maxSwapNanos / 1000 + " us");
+
+        // dialogs can't be shown after the activity saved its state
+        if( isResumed() ){
+            showResults(results);
+        } else {
+            pendingResults = results;
+        }
+    }
+
+    private final Runnable endSpeedRunRunnable = new Runnable() {
+        @Override
+        public void run() {
+            endSpeedRun();
+        }
+    };
+
+    // label each guess button with the country name of its flag, blank out unused buttons.
+    // buttons already guessed wrong, or all of them once answered, stay disabled.
+    private void bindGuessButtons() {
+        for( int choice=0; choice < guessRows * 2; ++choice ){
+            Button guessButton = guessButtons[choice];
+
+            if( guessFlagIds[choice] >= 0 ){
+                guessButton.setEnabled(!answered && (wrongGuesses & (1 << choice)) == 0);
+                guessButton.setText(guessLabels[choice]);
+            } else {
+                guessButton.setEnabled(false);
+                guessButton.setText("");
             }
         }
+    }
 
-        // randomly replace one button with the correct answer
-        int row = random.nextInt(guessRows);
-        int col = random.nextInt(2);
-        LinearLayout randomRow = guessLinearLayouts[row];
-        String countryName = getCountryName(correctAnswer);
-        ((Button) randomRow.getChildAt(col)).setText(countryName);
+    // pick the answer choices of the next question and look up their labels ahead of time,
+    // pack flag names are decoded from the pack file
+    private void prepareNextQuestion() {
+        engine.prepareNextQuestion(guessRows * 2, hardMode ? similarityIndex : null);
+        for( int choice=0; choice < nextLabelIds.length; ++choice ){
+            if( choice < engine.getNextChoiceCount() ){
+                nextLabelIds[choice] = engine.getNextChoice(choice);
+                nextLabels[choice] = getDisplayName(nextLabelIds[choice]);
+            } else {
+                nextLabelIds[choice] = -1;
+            }
+        }
+    }
+
+    // posted after a flag swap, so it runs once the frame showing the new flag has been drawn
+    private final Runnable prepareNextQuestionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if( !destroyed && catalog != null ) prepareNextQuestion();
+        }
+    };
+
+    // decode flags at the size of the flag views, guessing from the screen size until they're laid out
+    private void updateTargetSize() {
+        if( flagFrameLayout.getWidth() > 0 && flagFrameLayout.getHeight() > 0 ){
+            decoder.setTargetSize(flagFrameLayout.getWidth(), flagFrameLayout.getHeight());
+        } else {
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            decoder.setTargetSize(metrics.widthPixels, metrics.heightPixels / 2);
+        }
     }
 
     // clicklistener for buttons
@@ -219,85 +640,125 @@ public class MainActivityFragment extends Fragment {
 
         @Override
         public void onClick(View view) {
-            Button guessButton = (Button) view;
-            String guess = guessButton.getText().toString();
-            String answer = getCountryName(correctAnswer);
+            long tapStart = System.nanoTime();
+            PerfMetrics.beginSection("answerTap");
+            int choice = (Integer) view.getTag();
+            int guess = guessFlagIds[choice];
             ++totalGuesses;
 
+            // only buffered in memory, written in batches on a background thread
+            answerLog.record(engine.getCorrectFlag(), guess,
+                    SystemClock.elapsedRealtime() - questionShownMillis, System.currentTimeMillis());
+
             // correct guess
-            if( guess.equals(answer) ){
+            if( engine.isCorrect(guess) ){
                 ++correctAnswers;
+                answered = true;
 
                 // display correct answer in green text
-                answerTextView.setText(answer + "!");
+                answerTextView.setText(getCorrectAnswerText(guess));
                 answerTextView.setTextColor(Color.GREEN);
 
                 disableButtons();
 
-                // if user has gotten all correct
-                if( correctAnswers == FLAGS_IN_QUIZ ){
-                    // create a dialog alert with quiz stats
-                    DialogFragment quizResults = new DialogFragment(){
-                        @NonNull
-                        @Override
-                        public Dialog onCreateDialog(Bundle savedInstanceState) {
-                            AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
-
-                            builder.setMessage(
-                                    getString(R.string.results,
-                                              totalGuesses,
-                                              (1000/(double) totalGuesses
-                                    )
-                            ));
-
-                            builder.setPositiveButton(
-                                    R.string.reset_quiz,
-                                    new DialogInterface.OnClickListener() {
-                                        @Override
-                                        public void onClick(DialogInterface dialogInterface, int i){
-                                            resetQuiz();
-                                        }
-                                    }
-                            );
-
-                            return builder.create();
-                        }
-                    };
-
-                    // use FragmentManger to display the DialogFragment
-                    quizResults.setCancelable(false);
-                    quizResults.show(getFragmentManager(), "quiz results");
+                if( speedRunSeconds > 0 ){
+                    // no delay in a speed run, the next flag is already decoded
+                    if( engine.hasNextQuestion() ){
+                        nextFlagStartNanos = tapStart;
+                        loadNextFlag();
+                    } else {
+                        endSpeedRun();
+                    }
+                } else if( !engine.hasNextQuestion() ){ // if user has gotten all correct
+                    Log.d(TAG, "Flag cache hits: " + prefetcher.getHitCount() +
+                            ", misses: " + prefetcher.getMissCount() +
+                            ", bitmap pool reuse rate: " + pool.getReuseRate() +
+                            ", average tap latency: " + getAverageTapLatencyNanos() / 1000 + " us" +
+                            ", max: " + maxTapNanos / 1000 + " us" +
+                            ", flag transitions dropping frames: " + flagTransition.getSlowTransitionCount() +
+                            " of " + flagTransition.getTransitionCount() +
+                            ", longest frame: " + flagTransition.getMaxFrameNanos() / 1000 + " us");
+
+                    PerfMetrics.onQuizEnded();
+                    PerfMetrics.QUIZZES_FINISHED.incrementAndGet();
+                    showResults(getString(R.string.results, totalGuesses, (1000/(double) totalGuesses)));
 
                 } else { // answer is correct but quiz is not over
                     // load next flag after a 2-second delay
-                    handler.postDelayed(
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    loadNextFlag();
-                                }
-                            },
-                            2000
-                    );   // 2000 milliseconds for 2-seconds delay
+                    handler.postDelayed(loadNextFlagRunnable, 2000);   // 2000 milliseconds for 2-seconds delay
 
                 }
             } else {    // answer was incorrect
-                flagImageView.startAnimation(shakeAnimation);
+                flagTransition.shake(shakeAnimation);
 
                 answerTextView.setText(R.string.incorrect_answer);
                 answerTextView.setTextColor(Color.RED);
-                guessButton.setEnabled(false);
+                view.setEnabled(false);
+                wrongGuesses |= 1 << choice;
             }
+
+            recordTapLatency(System.nanoTime() - tapStart);
+            PerfMetrics.endSection();
         } // end overridden onClick() method
     };  // end onClickListener
 
+    // show a dialog alert with quiz stats and a button to start the next quiz
+    private void showResults(final String message) {
+        DialogFragment quizResults = new DialogFragment(){
+            @NonNull
+            @Override
+            public Dialog onCreateDialog(Bundle savedInstanceState) {
+                AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+
+                builder.setMessage(message);
+
+                builder.setPositiveButton(
+                        R.string.reset_quiz,
+                        new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialogInterface, int i){
+                                resetQuiz();
+                            }
+                        }
+                );
+
+                return builder.create();
+            }
+        };
+
+        // use FragmentManger to display the DialogFragment
+        quizResults.setCancelable(false);
+        quizResults.show(getFragmentManager(), "quiz results");
+    }
+
+    // shows the next question, kept in a field so a correct answer doesn't allocate a new Runnable
+    private final Runnable loadNextFlagRunnable = new Runnable() {
+        @Override
+        public void run() {
+            loadNextFlag();
+        }
+    };
+
+    private void recordTapLatency(long nanos) {
+        lastTapNanos = nanos;
+        totalTapNanos += nanos;
+        maxTapNanos = Math.max(maxTapNanos, nanos);
+        ++tapCount;
+    }
+
+    // time taken to handle the most recent answer tap, in nanoseconds
+    public long getLastTapLatencyNanos() { return lastTapNanos; }
+
+    public long getMaxTapLatencyNanos() { return maxTapNanos; }
+
+    public long getAverageTapLatencyNanos() {
+        return tapCount == 0 ? 0 : totalTapNanos / tapCount;
+    }
+
     // helper method to disable all answer Buttons
     public void disableButtons(){
-        for( int row=0; row < guessRows; ++row ){
-            LinearLayout guessRow = guessLinearLayouts[row];
-            for(int col=0; col < guessRow.getChildCount(); ++col ){
-                guessRow.getChildAt(col).setEnabled(false);
-            }
+        for( Button button : guessButtons ){
+            button.setEnabled(false);
         }
     }
 
@@ -308,7 +769,11 @@ public class MainActivityFragment extends Fragment {
         String choices = sharedPreferences.getString(MainActivity.CHOICES, "4");    // default to "4" if no prefs setting
 
         guessRows = Integer.parseInt(choices) / 2; // we have 2 buttons per row
+        showGuessRows();
+    }
 
+    // show as many rows of guess buttons as the user picked in prefs
+    private void showGuessRows() {
         // hide all buttons LinearLayouts
         for( LinearLayout layout : guessLinearLayouts ){
             layout.setVisibility(View.GONE);
@@ -324,12 +789,79 @@ public class MainActivityFragment extends Fragment {
     public void updateRegions(SharedPreferences sharedPreferences) {
         // get the set of regions user picked in prefs
         regionsSet = sharedPreferences.getStringSet(MainActivity.REGIONS, null);
+
+        // flags still loading get the mask computed by resetQuiz()
+        regionMaskComputed = packs != null;
+        if( regionMaskComputed ) regionMask = packs.getRegionMask(regionsSet);
+    }
+
+    // no flags in the selected regions, e.g. none selected or only those of a removed flag pack.
+    // switch the quiz and the stored selection to the default region, returns its flag ids.
+    private int[] selectDefaultRegion() {
+        Log.w(TAG, "No flags in regions " + regionsSet + ", using the default region");
+
+        regionsSet = new HashSet<>(Collections.singleton(getString(R.string.default_region)));
+        regionMask = packs.getRegionMask(regionsSet);
+        regionMaskComputed = true;
+
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getActivity());
+        preferences.edit().putStringSet(MainActivity.REGIONS, regionsSet).apply();
+        // the quiz already uses the fixed selection, so the change must not reset it again
+        quizSettings = new QuizResetCoordinator.QuizSettings(preferences);
+
+        Toast.makeText(getActivity(), R.string.default_region_message, Toast.LENGTH_SHORT).show();
+        return packs.getFlagIds(regionMask);
+    }
+
+    // method to update replay seed based on value in SharedPreferences, blank means a new seed per quiz
+    public void updateRandomSeed(SharedPreferences sharedPreferences) {
+        String seed = sharedPreferences.getString(MainActivity.RANDOM_SEED, "").trim();
+        useFixedSeed = false;
+
+        if( seed.length() > 0 ){
+            try{
+                fixedSeed = Long.parseLong(seed);
+                useFixedSeed = true;
+            } catch(NumberFormatException nfe) {
+                Log.e(TAG, "Invalid replay seed: " + seed, nfe);
+            }
+        }
+    }
+
+    // method to update adaptive mode based on value in SharedPreferences
+    public void updateAdaptive(SharedPreferences sharedPreferences) {
+        adaptive = sharedPreferences.getBoolean(MainActivity.ADAPTIVE, false);
     }
 
-    // helper method to extra country name from filename
-    private String getCountryName(String name) {
-        return name.substring(name.indexOf('-') + 1).replace('_', ' ');
+    // method to update hard mode based on value in SharedPreferences
+    public void updateHardMode(SharedPreferences sharedPreferences) {
+        hardMode = sharedPreferences.getBoolean(MainActivity.HARD_MODE, false);
     }
 
+    // method to update speed run time limit based on value in SharedPreferences
+    public void updateSpeedRun(SharedPreferences sharedPreferences) {
+        String seconds = sharedPreferences.getString(MainActivity.SPEED_RUN, "0");
 
+        try{
+            speedRunSeconds = Integer.parseInt(seconds);
+        } catch(NumberFormatException nfe) {
+            Log.e(TAG, "Invalid speed run time limit: " + seconds, nfe);
+            speedRunSeconds = 0;
+        }
+    }
+
+    // method to update pixel format of decoded flags based on value in SharedPreferences
+    public void updateFlagQuality(SharedPreferences sharedPreferences) {
+        String quality = sharedPreferences.getString(MainActivity.FLAG_QUALITY, "ARGB_8888");
+
+        try{
+            flagConfig = Bitmap.Config.valueOf(quality);
+        } catch(IllegalArgumentException iae) {
+            Log.e(TAG, "Unknown flag quality: " + quality, iae);
+            flagConfig = Bitmap.Config.ARGB_8888;
+        }
+
+        // flags still loading pick up the config when the decoder is created
+        if( decoder != null ) decoder.setConfig(flagConfig);
+    }
 }
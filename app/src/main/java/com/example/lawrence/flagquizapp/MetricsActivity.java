@@ -0,0 +1,116 @@
+package com.example.lawrence.flagquizapp;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import org.json.JSONException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+// debug builds only: shows the PerfMetrics of this process and exports them to a JSON or CSV file
+// in the app's external files directory, e.g. to pull with adb and compare two builds.
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final String TAG = "MetricsActivity";
+
+    private TextView metricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if( !BuildConfig.DEBUG ){
+            finish();   // not reachable from the menu of a release build
+            return;
+        }
+
+        setContentView(R.layout.activity_metrics);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        metricsTextView = (TextView) findViewById(R.id.metricsTextView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        try{
+            metricsTextView.setText(PerfMetrics.toJson().toString(2));
+        } catch(JSONException je) {
+            Log.e(TAG, "Error formatting metrics", je);
+        }
+    }
+
+    // onClick of the export and reset buttons
+    public void onExportJson(View view) {
+        export(".json");
+    }
+
+    public void onExportCsv(View view) {
+        export(".csv");
+    }
+
+    public void onResetMetrics(View view) {
+        PerfMetrics.reset();
+        showMetrics();
+    }
+
+    // write the metrics on a background thread, and tell the user where they went
+    private void export(final String extension) {
+        File directory = getExternalFilesDir(null);
+        if( directory == null ) directory = getFilesDir();     // external storage not mounted
+        final File file = new File(directory, "metrics-" + System.currentTimeMillis() + extension);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final boolean written = write(file, extension);
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MetricsActivity.this,
+                                written ? getString(R.string.metrics_exported, file.getPath())
+                                        : getString(R.string.metrics_export_failed),
+                                Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "MetricsExport").start();
+    }
+
+    private static boolean write(File file, String extension) {
+        Writer out = null;
+        try{
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            if( extension.equals(".json") ){
+                out.write(PerfMetrics.toJson().toString(2));
+            } else {
+                PerfMetrics.writeCsv(out);
+            }
+            return true;
+        } catch(IOException ioe) {
+            Log.e(TAG, "Error exporting metrics to " + file, ioe);
+            return false;
+        } catch(JSONException je) {
+            Log.e(TAG, "Error formatting metrics", je);
+            return false;
+        } finally {
+            try{
+                if( out != null ) out.close();
+            } catch(IOException ioe){
+                // nothing left to do with the file
+            }
+        }
+    }
+}
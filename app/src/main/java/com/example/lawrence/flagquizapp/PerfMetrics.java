@@ -0,0 +1,168 @@
+package com.example.lawrence.flagquizapp;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+// process-wide performance counters and histograms of the quiz's hot paths, shown on the debug
+// metrics screen and exported as JSON or CSV, so builds can be compared on the same device
+// without attaching a profiler.
+// the hot paths are also marked as android.os.Trace sections (api 18+) for systrace.
+// safe to use from any thread, recording takes no locks.
+public final class PerfMetrics {
+
+    // durations
+    public static final Histogram CATALOG_LOAD = new Histogram("catalog_load");
+    public static final Histogram FLAG_DECODE = new Histogram("flag_decode");
+    public static final Histogram QUIZ_RESET = new Histogram("quiz_reset");
+    // from a correct tap, or the end of the delay after it, until the next flag is drawn
+    public static final Histogram TAP_TO_NEXT_FLAG = new Histogram("tap_to_next_flag");
+
+    // counts
+    public static final AtomicLong RESETS = new AtomicLong();
+    public static final AtomicLong QUIZZES_FINISHED = new AtomicLong();
+    // garbage collections while a quiz was in progress, only counted on api 23+
+    public static final AtomicLong QUIZ_GC_COUNT = new AtomicLong();
+    public static final AtomicLong QUIZ_GC_MILLIS = new AtomicLong();
+    public static final AtomicLong QUIZ_BLOCKING_GC_COUNT = new AtomicLong();
+    public static final AtomicLong QUIZ_BLOCKING_GC_MILLIS = new AtomicLong();
+
+    private static final Histogram[] HISTOGRAMS = { CATALOG_LOAD, FLAG_DECODE, QUIZ_RESET, TAP_TO_NEXT_FLAG };
+    private static final AtomicLong[] COUNTERS = { RESETS, QUIZZES_FINISHED,
+            QUIZ_GC_COUNT, QUIZ_GC_MILLIS, QUIZ_BLOCKING_GC_COUNT, QUIZ_BLOCKING_GC_MILLIS };
+    private static final String[] COUNTER_NAMES = { "resets", "quizzes_finished",
+            "quiz_gc_count", "quiz_gc_millis", "quiz_blocking_gc_count", "quiz_blocking_gc_millis" };
+
+    private static final String[] GC_STATS = {
+            "art.gc.gc-count", "art.gc.gc-time", "art.gc.blocking-gc-count", "art.gc.blocking-gc-time" };
+    private static final AtomicLong[] GC_COUNTERS = {
+            QUIZ_GC_COUNT, QUIZ_GC_MILLIS, QUIZ_BLOCKING_GC_COUNT, QUIZ_BLOCKING_GC_MILLIS };
+    private static long[] quizStartGcStats;     // runtime gc stats when the current quiz started, or null
+
+    private PerfMetrics() {}
+
+    public static void beginSection(String name) {
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ) beginTraceSection(name);
+    }
+
+    // ends the most recent section begun on this thread
+    public static void endSection() {
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ) endTraceSection();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginTraceSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endTraceSection() {
+        Trace.endSection();
+    }
+
+    // a quiz started, the one before it (if still running) is over
+    public static synchronized void onQuizStarted() {
+        onQuizEnded();
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ) quizStartGcStats = readGcStats();
+    }
+
+    // the current quiz is over, count the garbage collections that happened during it
+    public static synchronized void onQuizEnded() {
+        if( quizStartGcStats == null ) return;
+
+        long[] now = readGcStats();
+        for( int i=0; i < GC_COUNTERS.length; ++i ){
+            GC_COUNTERS[i].addAndGet(now[i] - quizStartGcStats[i]);
+        }
+        quizStartGcStats = null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static long[] readGcStats() {
+        long[] stats = new long[GC_STATS.length];
+        for( int i=0; i < GC_STATS.length; ++i ){
+            String value = Debug.getRuntimeStat(GC_STATS[i]);
+            try{
+                stats[i] = value != null ? Long.parseLong(value) : 0;
+            } catch(NumberFormatException nfe) {
+                stats[i] = 0;
+            }
+        }
+        return stats;
+    }
+
+    public static void reset() {
+        for( Histogram histogram : HISTOGRAMS ){
+            histogram.clear();
+        }
+        for( AtomicLong counter : COUNTERS ){
+            counter.set(0);
+        }
+    }
+
+    // every metric, along with the build and device it was measured on
+    public static JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+
+        JSONObject build = new JSONObject();
+        build.put("version_name", BuildConfig.VERSION_NAME);
+        build.put("version_code", BuildConfig.VERSION_CODE);
+        build.put("build_type", BuildConfig.BUILD_TYPE);
+        build.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        build.put("fingerprint", Build.FINGERPRINT);
+        build.put("sdk", Build.VERSION.SDK_INT);
+        json.put("build", build);
+
+        JSONObject startup = new JSONObject();
+        startup.put("cold_start_millis", StartupMetrics.getColdStartMillis());
+        startup.put("warm_start_count", StartupMetrics.getWarmStartCount());
+        startup.put("average_warm_start_millis", StartupMetrics.getAverageWarmStartMillis());
+        json.put("startup", startup);
+
+        JSONObject counters = new JSONObject();
+        for( int i=0; i < COUNTERS.length; ++i ){
+            counters.put(COUNTER_NAMES[i], COUNTERS[i].get());
+        }
+        json.put("counters", counters);
+
+        JSONObject histograms = new JSONObject();
+        for( Histogram histogram : HISTOGRAMS ){
+            JSONObject stats = new JSONObject();
+            stats.put("count", histogram.getCount());
+            stats.put("mean_us", histogram.getMeanNanos() / 1000);
+            stats.put("p50_us", histogram.getPercentileMicros(0.5));
+            stats.put("p90_us", histogram.getPercentileMicros(0.9));
+            stats.put("p99_us", histogram.getPercentileMicros(0.99));
+            stats.put("max_us", histogram.getMaxNanos() / 1000);
+            histograms.put(histogram.getName(), stats);
+        }
+        json.put("histograms", histograms);
+
+        return json;
+    }
+
+    // one row per metric: counters only fill in the count column
+    public static void writeCsv(Writer out) throws IOException {
+        out.write("metric,count,mean_us,p50_us,p90_us,p99_us,max_us\n");
+        for( int i=0; i < COUNTERS.length; ++i ){
+            out.write(COUNTER_NAMES[i] + "," + COUNTERS[i].get() + ",,,,,\n");
+        }
+        out.write("cold_start_millis," + StartupMetrics.getColdStartMillis() + ",,,,,\n");
+        out.write("average_warm_start_millis," + StartupMetrics.getAverageWarmStartMillis() + ",,,,,\n");
+        for( Histogram histogram : HISTOGRAMS ){
+            out.write(histogram.getName() + "," + histogram.getCount() + "," +
+                    histogram.getMeanNanos() / 1000 + "," + histogram.getPercentileMicros(0.5) + "," +
+                    histogram.getPercentileMicros(0.9) + "," + histogram.getPercentileMicros(0.99) + "," +
+                    histogram.getMaxNanos() / 1000 + "\n");
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.lawrence.flagquizapp;
+
+import java.util.Random;
+
+// picks the flags of a quiz and the answer choices of each question.
+// flags are identified by their FlagCatalog id. selection uses a partial Fisher-Yates shuffle over
+// a primitive int array, so a question costs O(choices) no matter how big the catalog is and
+// allocates nothing once the arrays have grown to fit.
+// the quiz flags are drawn DRAW_WINDOW at a time as questions get near, so a long quiz such as a
+// speed run over every flag only pays for the flags it actually gets to.
+// this class has no Android imports so it can be unit tested on the plain JVM.
+public class QuizEngine {
+
+    public static final int MAX_CHOICES = 8;    // 4 rows of 2 buttons
+    private static final int MAX_REJECTIONS = 32;   // weighted draws of flags already in the quiz
+    static final int DRAW_WINDOW = 32;              // quiz flags drawn ahead of the current question
+
+    private final Random random;
+
+    private int[] candidates = new int[0];  // flag ids that can appear in this quiz, permuted in place
+    private int candidateCount;
+    private int[] positions = new int[0];   // index of each flag id in candidates
+
+    // candidates again, in the order they are drawn: the first drawnCount are the quiz flags so far.
+    // kept apart from candidates, which answer choices shuffle between draws.
+    private int[] drawOrder = new int[0];
+    private int[] drawPositions = new int[0];   // index of each flag id in drawOrder
+    private AdaptiveSampler sampler;        // weights the draws, null for uniform
+    private int drawnCount;
+
+    private int[] quizFlags = new int[0];   // correct flag of each question, in order
+    private int quizLength;
+    private int questionIndex = -1;         // index of the current question in quizFlags
+
+    private final int[] choices = new int[MAX_CHOICES];     // flag ids of the current answer choices
+    private int choiceCount;
+    private int correctChoice;              // index of the correct flag in choices
+
+    // answer choices of the next question, picked ahead by prepareNextQuestion()
+    private final int[] nextChoices = new int[MAX_CHOICES];
+    private int nextChoiceCount;
+    private int nextCorrectChoice;
+    private int preparedQuestion = -1;      // question index nextChoices were picked for, -1 if none
+    private int preparedNumOfChoices;
+    private FlagSimilarityIndex preparedSimilar;
+
+    // accepts flags that are candidates of the current quiz, for similarity queries
+    private final FlagSimilarityIndex.Filter candidateFilter = new FlagSimilarityIndex.Filter() {
+        @Override
+        public boolean accept(int flagId) {
+            if( flagId >= positions.length ) return false;
+            int position = positions[flagId];   // stale for flags of earlier quizzes, so check back
+            return position < candidateCount && candidates[position] == flagId;
+        }
+    };
+
+    public QuizEngine(Random random) {
+        this.random = random;
+    }
+
+    // start a new quiz of up to flagsInQuiz distinct flags, drawn from the first count ids of flagIds
+    public void reset(int[] flagIds, int count, int flagsInQuiz) {
+        reset(flagIds, count, flagsInQuiz, null);
+    }
+
+    // same, but draw the quiz flags weighted by sampler instead of uniformly, if it isn't null.
+    // answer choices are still uniform.
+    public void reset(int[] flagIds, int count, int flagsInQuiz, AdaptiveSampler sampler) {
+        if( candidates.length < count ){
+            candidates = new int[count];
+            drawOrder = new int[count];
+        }
+        System.arraycopy(flagIds, 0, candidates, 0, count);
+        System.arraycopy(flagIds, 0, drawOrder, 0, count);
+        candidateCount = count;
+
+        int maxId = -1;
+        for( int i=0; i < count; ++i ){
+            maxId = Math.max(maxId, candidates[i]);
+        }
+        if( positions.length <= maxId ){
+            positions = new int[maxId + 1];
+            drawPositions = new int[maxId + 1];
+        }
+        for( int i=0; i < count; ++i ){
+            positions[candidates[i]] = i;
+            drawPositions[candidates[i]] = i;
+        }
+
+        quizLength = Math.min(flagsInQuiz, count);
+        if( quizFlags.length < quizLength ) quizFlags = new int[quizLength];
+        this.sampler = sampler;
+        if( sampler != null ) sampler.prepare(flagIds, count);
+
+        drawnCount = 0;
+        drawUpTo(DRAW_WINDOW);
+
+        questionIndex = -1;
+        choiceCount = 0;
+        preparedQuestion = -1;
+    }
+
+    // draw the quiz flags up to, but not including, question index end.
+    // partial Fisher-Yates: after k steps the first k of drawOrder are a uniform random sample.
+    // weighted, step k moves the drawn flag to position k instead, so flags already in the quiz
+    // are exactly those before k.
+    private void drawUpTo(int end) {
+        end = Math.min(end, quizLength);
+        for( int i=drawnCount; i < end; ++i ){
+            if( sampler == null ){
+                swapDrawn(i, i + random.nextInt(candidateCount - i));
+            } else {
+                swapDrawn(i, drawPositions[drawWeighted(sampler, i)]);
+            }
+            quizFlags[i] = drawOrder[i];
+        }
+        drawnCount = Math.max(drawnCount, end);
+    }
+
+    // make sure the flag of question index has been drawn, drawing the next window if not
+    private void ensureDrawn(int index) {
+        if( index >= drawnCount ) drawUpTo(index + DRAW_WINDOW);
+    }
+
+    public boolean hasNextQuestion() {
+        return questionIndex + 1 < quizLength;
+    }
+
+    // advance to the next question and pick its answer choices, returns the correct flag id.
+    // the number of choices is capped by MAX_CHOICES and by the number of candidates.
+    public int nextQuestion(int numOfChoices) {
+        return nextQuestion(numOfChoices, null);
+    }
+
+    // same, but if similar isn't null the distractors are the candidates that look most like the
+    // correct flag instead of random ones.
+    // uses the choices picked by prepareNextQuestion() if it was called with the same arguments.
+    public int nextQuestion(int numOfChoices, FlagSimilarityIndex similar) {
+        if( !hasNextQuestion() ) throw new IllegalStateException("Quiz is over");
+        prepareNextQuestion(numOfChoices, similar);
+
+        ++questionIndex;
+        System.arraycopy(nextChoices, 0, choices, 0, nextChoiceCount);
+        choiceCount = nextChoiceCount;
+        correctChoice = nextCorrectChoice;
+        preparedQuestion = -1;
+        return quizFlags[questionIndex];
+    }
+
+    // pick the answer choices of the next question now, e.g. while the current one is shown,
+    // so they can be looked at with getNextChoice() and nextQuestion() only switches to them.
+    // does nothing if the quiz is over or they were already picked with the same arguments.
+    public void prepareNextQuestion(int numOfChoices, FlagSimilarityIndex similar) {
+        int index = questionIndex + 1;
+        if( index >= quizLength ) return;
+        if( preparedQuestion == index && preparedNumOfChoices == numOfChoices && preparedSimilar == similar ){
+            return;
+        }
+
+        ensureDrawn(index);
+        pickChoices(quizFlags[index], numOfChoices, similar);
+        preparedQuestion = index;
+        preparedNumOfChoices = numOfChoices;
+        preparedSimilar = similar;
+    }
+
+    // number of answer choices of the next question, 0 if prepareNextQuestion() wasn't called for it
+    public int getNextChoiceCount() {
+        return preparedQuestion == questionIndex + 1 ? nextChoiceCount : 0;
+    }
+
+    public int getNextChoice(int index) { return nextChoices[index]; }
+
+    // pick the answer choices of the question with the given correct flag into nextChoices
+    private void pickChoices(int correct, int numOfChoices, FlagSimilarityIndex similar) {
+        nextChoiceCount = Math.min(Math.min(numOfChoices, MAX_CHOICES), candidateCount);
+
+        if( similar != null && correct < similar.size() &&
+            similar.findNearest(correct, nextChoiceCount - 1, candidateFilter, nextChoices) == nextChoiceCount - 1 ){
+            placeCorrectChoice(correct);
+            return;
+        }
+
+        // move the correct flag out of the range distractors are drawn from
+        int last = candidateCount - 1;
+        swap(positions[correct], last);
+
+        for( int i=0; i < nextChoiceCount - 1; ++i ){
+            swap(i, i + random.nextInt(last - i));
+            nextChoices[i] = candidates[i];
+        }
+
+        placeCorrectChoice(correct);
+    }
+
+    // put the correct flag at a random position, moving whatever was there to the end
+    private void placeCorrectChoice(int correct) {
+        nextCorrectChoice = random.nextInt(nextChoiceCount);
+        nextChoices[nextChoiceCount - 1] = nextChoices[nextCorrectChoice];
+        nextChoices[nextCorrectChoice] = correct;
+    }
+
+    // weighted draw of a flag not yet in the quiz, i.e. at position start or later in drawOrder
+    private int drawWeighted(AdaptiveSampler sampler, int start) {
+        // no repeats: redraw flags already picked, O(1) per draw
+        for( int tries=0; tries < MAX_REJECTIONS; ++tries ){
+            int flagId = sampler.sample(random);
+            if( drawPositions[flagId] >= start ) return flagId;
+        }
+
+        // nearly all the weight is on flags already picked, scan the remaining ones instead
+        double total = 0;
+        for( int i=start; i < candidateCount; ++i ){
+            total += sampler.getWeight(drawOrder[i]);
+        }
+        double target = random.nextDouble() * total;
+        for( int i=start; i < candidateCount - 1; ++i ){
+            target -= sampler.getWeight(drawOrder[i]);
+            if( target < 0 ) return drawOrder[i];
+        }
+        return drawOrder[candidateCount - 1];
+    }
+
+    // flag id of the question offset places after the current one, or -1 if there is none.
+    // used to prefetch upcoming flags.
+    public int getUpcomingFlag(int offset) {
+        int index = questionIndex + offset;
+        if( index < 0 || index >= quizLength ) return -1;
+        ensureDrawn(index);
+        return quizFlags[index];
+    }
+
+    public boolean isCorrect(int flagId) {
+        return flagId == getCorrectFlag();
+    }
+
+    public int getCorrectFlag() { return quizFlags[questionIndex]; }
+
+    public int getChoiceCount() { return choiceCount; }
+
+    public int getChoice(int index) { return choices[index]; }
+
+    public int getCorrectChoice() { return correctChoice; }
+
+    // 1-based number of the current question
+    public int getQuestionNumber() { return questionIndex + 1; }
+
+    public int getQuizLength() { return quizLength; }
+
+    private void swapDrawn(int i, int j) {
+        int a = drawOrder[i];
+        int b = drawOrder[j];
+        drawOrder[i] = b;
+        drawOrder[j] = a;
+        drawPositions[b] = i;
+        drawPositions[a] = j;
+    }
+
+    private void swap(int i, int j) {
+        int a = candidates[i];
+        int b = candidates[j];
+        candidates[i] = b;
+        candidates[j] = a;
+        positions[b] = i;
+        positions[a] = j;
+    }
+}
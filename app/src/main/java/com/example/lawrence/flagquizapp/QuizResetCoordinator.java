@@ -0,0 +1,164 @@
+package com.example.lawrence.flagquizapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// batches preference changes into a single quiz reset.
+// a change only marks the settings dirty, the reset runs once the settings are committed:
+// when MainActivity is started again (e.g. back from SettingsActivity), or DEBOUNCE_MILLIS after
+// the last change while the quiz is visible.
+// the reset is skipped entirely if the settings the quiz depends on are the same as last time,
+// which also covers a retained quiz surviving a configuration change.
+// must be used from the UI thread.
+public class QuizResetCoordinator {
+
+    private static final String TAG = "QuizResetCoordinator";
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler();
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private MainActivityFragment quizFragment;  // null while the activity is stopped
+    private boolean dirty = true;               // preferences changed since the last flush
+    private int pendingRequests;                // changes since the last flush
+
+    private int resetCount;
+    private int avoidedResetCount;
+
+    public QuizResetCoordinator(Context context, SharedPreferences preferences) {
+        this.context = context;
+        this.preferences = preferences;
+    }
+
+    // settings are committed once the activity is visible again, so apply them right away
+    public void onStart(MainActivityFragment quizFragment) {
+        this.quizFragment = quizFragment;
+        flush();
+    }
+
+    // keep batching changes until the activity comes back
+    public void onStop() {
+        handler.removeCallbacks(flushRunnable);
+        quizFragment = null;
+    }
+
+    // called for every preference change, would have been a full reset each
+    public void requestReset() {
+        dirty = true;
+        ++pendingRequests;
+
+        // while the quiz is visible, wait for changes to settle before resetting
+        if( quizFragment != null ){
+            handler.removeCallbacks(flushRunnable);
+            handler.postDelayed(flushRunnable, DEBOUNCE_MILLIS);
+        }
+    }
+
+    // reset the quiz now if the effective settings changed since the last reset
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if( !dirty || quizFragment == null ) return;
+        dirty = false;
+
+        // settings of the quiz in progress, kept by the retained fragment. null before the first quiz.
+        QuizSettings appliedSettings = quizFragment.getQuizSettings();
+        QuizSettings settings = new QuizSettings(preferences);
+        boolean changed = !settings.equals(appliedSettings);
+        int requests = pendingRequests;
+        pendingRequests = 0;
+
+        // every change request beyond the one reset actually done was avoided
+        avoidedResetCount += changed ? Math.max(0, requests - 1) : requests;
+
+        if( !changed ){
+            Log.d(TAG, "Settings unchanged, skipped reset. Avoided resets: " + avoidedResetCount);
+            return;
+        }
+
+        quizFragment.updateGuessRows(preferences);
+        quizFragment.updateRegions(preferences);
+        quizFragment.updateFlagQuality(preferences);
+        quizFragment.updateRandomSeed(preferences);
+        quizFragment.updateAdaptive(preferences);
+        quizFragment.updateHardMode(preferences);
+        quizFragment.updateSpeedRun(preferences);
+        // before the reset, which may still replace settings it can't use
+        quizFragment.setQuizSettings(settings);
+        quizFragment.resetQuiz();
+        ++resetCount;
+
+        // no message on the very first quiz, only when settings were changed
+        if( appliedSettings != null ){
+            Toast.makeText(context, R.string.restarting_quiz, Toast.LENGTH_SHORT).show();
+        }
+
+        Log.d(TAG, "Quiz reset after " + requests + " preference changes. Resets: " + resetCount +
+                ", avoided resets: " + avoidedResetCount);
+    }
+
+    public int getResetCount() { return resetCount; }
+
+    public int getAvoidedResetCount() { return avoidedResetCount; }
+
+    // snapshot of every preference a quiz is built from
+    static class QuizSettings {
+
+        private final Set<String> regions;
+        private final String choices;
+        private final String flagQuality;
+        private final String randomSeed;
+        private final boolean adaptive;
+        private final boolean hardMode;
+        private final String speedRun;
+
+        QuizSettings(SharedPreferences preferences) {
+            Set<String> selected = preferences.getStringSet(MainActivity.REGIONS, null);
+            // copy, the set returned by SharedPreferences must not be kept or modified
+            regions = selected == null ?
+                    Collections.<String>emptySet() : new HashSet<String>(selected);
+            choices = preferences.getString(MainActivity.CHOICES, "4");
+            flagQuality = preferences.getString(MainActivity.FLAG_QUALITY, "ARGB_8888");
+            randomSeed = preferences.getString(MainActivity.RANDOM_SEED, "").trim();
+            adaptive = preferences.getBoolean(MainActivity.ADAPTIVE, false);
+            hardMode = preferences.getBoolean(MainActivity.HARD_MODE, false);
+            speedRun = preferences.getString(MainActivity.SPEED_RUN, "0");
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if( this == object ) return true;
+            if( !(object instanceof QuizSettings) ) return false;
+
+            QuizSettings other = (QuizSettings) object;
+            return regions.equals(other.regions) && choices.equals(other.choices) &&
+                    flagQuality.equals(other.flagQuality) && randomSeed.equals(other.randomSeed) &&
+                    adaptive == other.adaptive && hardMode == other.hardMode &&
+                    speedRun.equals(other.speedRun);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = regions.hashCode();
+            hash = 31 * hash + choices.hashCode();
+            hash = 31 * hash + flagQuality.hashCode();
+            hash = 31 * hash + randomSeed.hashCode();
+            hash = 31 * hash + (adaptive ? 1 : 0);
+            hash = 31 * hash + (hardMode ? 1 : 0);
+            return 31 * hash + speedRun.hashCode();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.lawrence.flagquizapp;
 
+import android.content.Context;
+import android.os.Handler;
+import android.preference.MultiSelectListPreference;
 import android.preference.PreferenceFragment;
 import android.support.v4.app.Fragment;
 import android.os.Bundle;
@@ -7,11 +10,62 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.Arrays;
+
 public class SettingsActivityFragment extends PreferenceFragment {
 
+    private final Handler handler = new Handler();
+    private boolean destroyed;  // set once the settings are closed, a scan finishing later is ignored
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         addPreferencesFromResource(R.xml.preferences);  // load from xml file
+        scanFlagPacks();
+    }
+
+    @Override
+    public void onDestroy() {
+        destroyed = true;
+        super.onDestroy();
+    }
+
+    // pick up flag packs dropped into app storage since the last scan on a background thread,
+    // so reading the pack headers (and the catalog, if the quiz hasn't loaded it yet) doesn't delay
+    // the first frame, then offer the region of every pack next to the bundled regions
+    private void scanFlagPacks() {
+        final Context context = getActivity().getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                FlagPacks packs = FlagAssets.getPacks(context);
+                packs.scan();
+                final FlagPack[] flagPacks = packs.getPacks();
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if( !destroyed ) addFlagPackRegions(flagPacks);
+                    }
+                });
+            }
+        }, "FlagPackScanner").start();
+    }
+
+    private void addFlagPackRegions(FlagPack[] flagPacks) {
+        MultiSelectListPreference regions = (MultiSelectListPreference) findPreference(MainActivity.REGIONS);
+        CharSequence[] entries = regions.getEntries();
+        CharSequence[] entryValues = regions.getEntryValues();
+        int bundled = entries.length;
+
+        entries = Arrays.copyOf(entries, bundled + flagPacks.length);
+        entryValues = Arrays.copyOf(entryValues, bundled + flagPacks.length);
+        for( int i=0; i < flagPacks.length; ++i ){
+            entries[bundled + i] = flagPacks[i].getTitle();
+            entryValues[bundled + i] = flagPacks[i].getRegion();
+        }
+
+        regions.setEntries(entries);
+        regions.setEntryValues(entryValues);
     }
 }
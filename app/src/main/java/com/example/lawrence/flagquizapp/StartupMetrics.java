@@ -0,0 +1,64 @@
+package com.example.lawrence.flagquizapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+// measures how long it takes until the first flag of the quiz is visible.
+// a cold start is timed from process start, a warm start (activity recreated in a running process)
+// from the activity's onCreate().
+public final class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    // all times are SystemClock.elapsedRealtime() millis, -1 means not recorded
+    private static long processStart = -1;
+    private static long activityStart = -1;
+    private static boolean firstFlagShown;     // false until the first flag of this process is visible
+
+    private static long coldStartMillis = -1;
+    private static long lastWarmStartMillis = -1;
+    private static int warmStartCount;
+    private static long totalWarmStartMillis;
+
+    private StartupMetrics() {}
+
+    // called as early as possible in the process, from FlagQuizApplication
+    public static synchronized void onProcessStart() {
+        processStart = SystemClock.elapsedRealtime();
+    }
+
+    public static synchronized void onActivityCreated() {
+        activityStart = SystemClock.elapsedRealtime();
+    }
+
+    // called when the first flag after an activity start has been drawn
+    public static synchronized void onFirstFlagVisible() {
+        if( activityStart < 0 ) return;     // already measured for this activity
+        long now = SystemClock.elapsedRealtime();
+
+        if( !firstFlagShown ){
+            firstFlagShown = true;
+            coldStartMillis = now - (processStart >= 0 ? processStart : activityStart);
+            Log.i(TAG, "Cold start: " + coldStartMillis + " ms to first flag");
+        } else {
+            lastWarmStartMillis = now - activityStart;
+            totalWarmStartMillis += lastWarmStartMillis;
+            ++warmStartCount;
+            Log.i(TAG, "Warm start: " + lastWarmStartMillis + " ms to first flag");
+        }
+
+        activityStart = -1;
+    }
+
+    // process start to first flag visible, -1 if the first flag hasn't been shown yet
+    public static synchronized long getColdStartMillis() { return coldStartMillis; }
+
+    // activity start to first flag visible for the most recent warm start, -1 if there was none
+    public static synchronized long getLastWarmStartMillis() { return lastWarmStartMillis; }
+
+    public static synchronized int getWarmStartCount() { return warmStartCount; }
+
+    public static synchronized long getAverageWarmStartMillis() {
+        return warmStartCount == 0 ? -1 : totalWarmStartMillis / warmStartCount;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.lawrence.flagquizapp;
+
+import java.util.Random;
+
+// fast, seedable, non-cryptographic random number generator (xoshiro128**).
+// unlike SecureRandom it never blocks waiting for entropy, and the same seed always produces
+// the same numbers, so a quiz can be replayed exactly from its seed.
+// not thread-safe: give each quiz its own instance.
+// this class has no Android imports so it can also be used on the plain JVM.
+public class XoshiroRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    // generator state, must never be all zero.
+    // not initialized here because Random's constructor calls setSeed() before field initializers run.
+    private int s0;
+    private int s1;
+    private int s2;
+    private int s3;
+    private long seed;  // last seed passed to setSeed()
+
+    // seeded from the clock, like new Random()
+    public XoshiroRandom() {
+        super();
+    }
+
+    public XoshiroRandom(long seed) {
+        super(seed);
+    }
+
+    // expand the 64-bit seed into the 128-bit state with SplitMix64, as recommended by the authors
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);        // resets the cached nextGaussian()
+        this.seed = seed;
+
+        long x = seed;
+        long a = splitMix64(x += 0x9E3779B97F4A7C15L);
+        long b = splitMix64(x + 0x9E3779B97F4A7C15L);
+        s0 = (int) a;
+        s1 = (int) (a >>> 32);
+        s2 = (int) b;
+        s3 = (int) (b >>> 32);
+    }
+
+    public long getSeed() { return seed; }
+
+    @Override
+    protected int next(int bits) {
+        int result = Integer.rotateLeft(s1 * 5, 7) * 9;
+        int t = s1 << 9;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Integer.rotateLeft(s3, 11);
+
+        return result >>> (32 - bits);
+    }
+
+    private static long splitMix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveSamplerTest {
+
+    @Test
+    public void aliasTable_matchesWeights() {
+        AliasTable table = new AliasTable();
+        table.build(new float[]{ 1, 0, 3, 4 }, 4);
+
+        Random random = new Random(5);
+        int[] counts = new int[4];
+        for( int i=0; i < 80000; ++i ){
+            ++counts[table.sample(random)];
+        }
+
+        assertEquals(10000, counts[0], 600);
+        assertEquals(0, counts[1]);
+        assertEquals(30000, counts[2], 600);
+        assertEquals(40000, counts[3], 600);
+    }
+
+    @Test
+    public void hardFlags_comeUpMoreOften() {
+        AnswerStats stats = new AnswerStats();
+        for( int id=0; id < 100; ++id ){
+            stats.add(id, true, 1000);
+        }
+        for( int i=0; i < 5; ++i ){
+            stats.add(7, false, 1000);  // flag 7 was also missed 5 times
+        }
+
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.updateStats(stats);
+        assertTrue(sampler.getWeight(7) > sampler.getWeight(8));
+
+        int[] flagIds = new int[100];
+        for( int i=0; i < flagIds.length; ++i ){
+            flagIds[i] = i;
+        }
+
+        QuizEngine engine = new QuizEngine(new Random(9));
+        int sevens = 0;
+        for( int quiz=0; quiz < 1000; ++quiz ){
+            engine.reset(flagIds, flagIds.length, 10, sampler);
+            for( int i=1; i <= engine.getQuizLength(); ++i ){
+                if( engine.getUpcomingFlag(i) == 7 ) ++sevens;
+            }
+        }
+
+        // uniform sampling would pick flag 7 in about 100 of 1000 quizzes
+        assertTrue("flag 7 picked " + sevens + " times", sevens > 250);
+        assertEquals(1, sampler.getRebuildCount());
+    }
+
+    @Test
+    public void weightedQuiz_hasNoRepeatsAndStaysInRegion() {
+        // all the weight on one flag forces the fallback once it has been picked
+        AnswerStats stats = new AnswerStats();
+        for( int i=0; i < 1000; ++i ){
+            stats.add(3, false, 60000);
+        }
+        for( int id=0; id < 20; ++id ){
+            if( id != 3 ) stats.add(id, true, 0);
+        }
+
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.updateStats(stats);
+
+        int[] region = { 1, 3, 5, 7, 9, 11, 13, 15 };
+        QuizEngine engine = new QuizEngine(new Random(1));
+        engine.reset(region, region.length, 6, sampler);
+
+        Set<Integer> seen = new HashSet<>();
+        while( engine.hasNextQuestion() ){
+            int flag = engine.nextQuestion(4);
+            assertEquals(1, flag % 2);
+            assertTrue("flag repeated: " + flag, seen.add(flag));
+        }
+        assertEquals(6, seen.size());
+    }
+
+    @Test
+    public void prepare_onlyRebuildsWhenSomethingChanged() {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        AnswerStats stats = new AnswerStats();
+        for( int i=0; i < 10; ++i ){
+            stats.add(2, true, 500);
+        }
+        int[] flagIds = { 0, 1, 2, 3 };
+
+        sampler.updateStats(stats);
+        sampler.prepare(flagIds, 4);
+        sampler.updateStats(stats);
+        sampler.prepare(flagIds, 4);
+        assertEquals(1, sampler.getRebuildCount());
+
+        // one more answer moves the weight of flag 2 a little, it is updated without a rebuild
+        float oldWeight = sampler.getWeight(2);
+        stats.add(2, false, 500);
+        sampler.updateStats(stats, new int[]{ 2 }, 1);
+        sampler.prepare(flagIds, 4);
+        assertEquals(1, sampler.getRebuildCount());
+        assertTrue(sampler.getWeight(2) > oldWeight);
+
+        // and draws follow the new weight
+        Random random = new Random(3);
+        float total = 0;
+        for( int id : flagIds ){
+            total += sampler.getWeight(id);
+        }
+        int twos = 0;
+        for( int i=0; i < 80000; ++i ){
+            if( sampler.sample(random) == 2 ) ++twos;
+        }
+        assertEquals(80000 * sampler.getWeight(2) / total, twos, 800);
+
+        // a weight far outside the table's bound, or other flags, do rebuild it
+        for( int i=0; i < 20; ++i ){
+            stats.add(2, false, 20000);
+        }
+        sampler.updateStats(stats, new int[]{ 2 }, 1);
+        sampler.prepare(flagIds, 4);
+        sampler.prepare(flagIds, 3);
+        assertEquals(3, sampler.getRebuildCount());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class AnswerLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // record count guesses, every third one wrong
+    private static void recordGuesses(AnswerLog log, int count) {
+        for( int i=0; i < count; ++i ){
+            int flagId = i % 10;
+            log.record(flagId, i % 3 == 0 ? flagId + 1 : flagId, 1000, 1460000000000L + i);
+        }
+    }
+
+    private AnswerStats reopen() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        log.close();
+        return log.getStats();
+    }
+
+    @Test
+    public void guesses_surviveReopening() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        recordGuesses(log, 100);    // not a multiple of the batch size, close() flushes the rest
+        log.close();
+
+        AnswerStats stats = reopen();
+        assertEquals(100, stats.getTotalAttempts());
+        assertEquals(10, stats.getAttempts(3));
+        assertEquals(1000, stats.getAverageAnswerMillis(3));
+        assertEquals(0.4f, stats.getErrorRate(0), 0.0001f);    // i = 0, 30, 60, 90 of 0..90
+    }
+
+    @Test
+    public void tornRecord_isDroppedOnOpen() throws Exception {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        recordGuesses(log, 50);
+        log.close();
+
+        // simulate a crash in the middle of writing the last record
+        File file = new File(folder.getRoot(), AnswerLog.LOG_FILE);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        assertEquals(49, reopen().getTotalAttempts());
+        assertEquals(AnswerLog.HEADER_SIZE + 49 * AnswerLog.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void compaction_keepsStatsAndEmptiesLog() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        recordGuesses(log, AnswerLog.COMPACT_RECORDS + 5);
+        log.close();
+
+        // depending on how batches were cut, the last few guesses are either compacted or still logged
+        assertTrue(new File(folder.getRoot(), AnswerLog.STATS_FILE).exists());
+        assertTrue(new File(folder.getRoot(), AnswerLog.LOG_FILE).length() <=
+                   AnswerLog.HEADER_SIZE + 5 * AnswerLog.RECORD_SIZE);
+        assertEquals(AnswerLog.COMPACT_RECORDS + 5, reopen().getTotalAttempts());
+    }
+
+    @Test
+    public void idsAboveShortRange_surviveReopening() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        log.record(70000, 70000, 500, 1460000000000L);
+        log.record(70000, 3, 500, 1460000000001L);
+        log.close();
+
+        AnswerStats stats = reopen();
+        assertEquals(2, stats.getAttempts(70000));
+        assertEquals(0.5f, stats.getErrorRate(70000), 0.0001f);
+        assertEquals(0, stats.getAttempts(70000 & 0xFFFF));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void record_rejectsOutOfRangeIds() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        try{
+            log.record(AnswerLog.MAX_FLAG_ID + 1, 0, 500, 1460000000000L);
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void version1Log_isReadAndCompacted() throws Exception {
+        // header and two records in the old layout with short ids
+        File file = new File(folder.getRoot(), AnswerLog.LOG_FILE);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(AnswerLog.LOG_MAGIC);
+        raf.writeShort(1);
+        raf.writeShort(20);
+        raf.writeLong(0);
+        for( int chosenId=7; chosenId <= 8; ++chosenId ){
+            byte[] record = new byte[16];
+            record[1] = 7;
+            record[3] = (byte) chosenId;
+            record[7] = 100;
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            raf.write(record);
+            raf.writeInt((int) crc.getValue());
+        }
+        raf.close();
+
+        AnswerStats stats = reopen();
+        assertEquals(2, stats.getAttempts(7));
+        assertEquals(0.5f, stats.getErrorRate(7), 0.0001f);
+        assertEquals(100, stats.getAverageAnswerMillis(7));
+
+        // folded into the stats, and the log starts over in the current format
+        assertTrue(new File(folder.getRoot(), AnswerLog.STATS_FILE).exists());
+        assertEquals(AnswerLog.HEADER_SIZE, file.length());
+        assertEquals(2, reopen().getTotalAttempts());
+    }
+
+    @Test
+    public void updateSampler_onlyPassesNewGuesses() throws InterruptedException {
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        log.record(4, 5, 500, 1460000000000L);
+        log.updateSampler(sampler);
+        float missed = sampler.getWeight(4);
+        assertTrue(missed > AdaptiveSampler.UNSEEN_WEIGHT);
+
+        // flag 4 is not passed again, so a sampler that forgot it keeps the default
+        AdaptiveSampler other = new AdaptiveSampler();
+        log.record(6, 6, 500, 1460000000001L);
+        log.updateSampler(other);
+        log.close();
+        assertEquals(AdaptiveSampler.UNSEEN_WEIGHT, other.getWeight(4), 0f);
+        assertTrue(other.getWeight(6) < AdaptiveSampler.UNSEEN_WEIGHT);
+    }
+
+    @Test
+    public void corruptStatsFile_isMovedAsideAndGuessesAreStillSaved() throws Exception {
+        File statsFile = new File(folder.getRoot(), AnswerLog.STATS_FILE);
+        RandomAccessFile raf = new RandomAccessFile(statsFile, "rw");
+        raf.writeInt(AnswerLog.STATS_MAGIC);
+        raf.writeShort(AnswerLog.VERSION);
+        raf.writeLong(3);
+        raf.writeInt(1000);     // stats of 1000 flags, but the file ends here
+        raf.close();
+
+        AnswerLog log = new AnswerLog(folder.getRoot());
+        recordGuesses(log, 40);
+        log.close();
+
+        assertTrue(new File(folder.getRoot(), AnswerLog.STATS_FILE + ".corrupt").exists());
+        assertEquals(40, reopen().getTotalAttempts());
+    }
+}
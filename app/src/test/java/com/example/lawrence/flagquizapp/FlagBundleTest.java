@@ -0,0 +1,66 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FlagBundleTest {
+
+    // same layout the packFlagBundle task writes
+    private static ByteBuffer pack(byte[]... images) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(FlagBundle.MAGIC);
+        out.writeShort(FlagBundle.VERSION);
+        out.writeInt(images.length);
+
+        int offset = 4 + 2 + 4 + 4 * (images.length + 1);
+        out.writeInt(offset);
+        for( byte[] image : images ){
+            offset += image.length;
+            out.writeInt(offset);
+        }
+        for( byte[] image : images ){
+            out.write(image);
+        }
+
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Test
+    public void getFlag_returnsEachImage() throws IOException {
+        FlagBundle bundle = new FlagBundle(pack(new byte[]{ 1, 2, 3 }, new byte[0], new byte[]{ 4, 5 }));
+
+        assertEquals(3, bundle.size());
+        assertEquals(ByteBuffer.wrap(new byte[]{ 1, 2, 3 }), bundle.getFlag(0));
+        assertEquals(0, bundle.getFlag(1).remaining());
+        assertEquals(ByteBuffer.wrap(new byte[]{ 4, 5 }), bundle.getFlag(2));
+    }
+
+    @Test
+    public void openFlag_streamsOnlyThatImage() throws IOException {
+        FlagBundle bundle = new FlagBundle(pack(new byte[]{ 1, 2, 3 }, new byte[]{ 4, 5 }));
+        InputStream stream = bundle.openFlag(1);
+
+        stream.mark(2);
+        assertEquals(4, stream.read());
+        stream.reset();
+
+        byte[] bytes = new byte[8];
+        assertEquals(2, stream.read(bytes, 0, bytes.length));
+        assertEquals(5, bytes[1]);
+        assertEquals(-1, stream.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_rejectsOtherFiles() throws IOException {
+        new FlagBundle(ByteBuffer.wrap(new byte[16]));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FlagCatalogTest {
+
+    private static FlagCatalog sampleCatalog() {
+        return FlagCatalog.fromAssetPaths(
+                new String[]{ "Africa", "North_America" },
+                Arrays.asList(
+                        "Africa/Africa-Cape_Verde.png",
+                        "Africa/Africa-Kenya.png",
+                        "North_America/North_America-United_States.png"));
+    }
+
+    @Test
+    public void fromAssetPaths_derivesNamesAndRegions() {
+        FlagCatalog catalog = sampleCatalog();
+
+        assertEquals(3, catalog.size());
+        assertEquals("Africa-Cape_Verde", catalog.getFileName(0));
+        assertEquals("Cape Verde", catalog.getDisplayName(0));
+        assertEquals(1, catalog.getRegionOrdinalOf(2));
+        assertEquals("North_America/North_America-United_States.png", catalog.getAssetPath(2));
+    }
+
+    @Test
+    public void writeThenRead_roundTrips() throws IOException {
+        FlagCatalog catalog = sampleCatalog();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        catalog.write(bytes);
+
+        FlagCatalog read = FlagCatalog.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(catalog.size(), read.size());
+        assertEquals(catalog.getRegionCount(), read.getRegionCount());
+        for( int id=0; id < catalog.size(); ++id ){
+            assertEquals(catalog.getFileName(id), read.getFileName(id));
+            assertEquals(catalog.getDisplayName(id), read.getDisplayName(id));
+            assertEquals(catalog.getAssetPath(id), read.getAssetPath(id));
+            assertEquals(catalog.getRegionOrdinalOf(id), read.getRegionOrdinalOf(id));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException {
+        FlagCatalog.read(new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4, 5, 6 }));
+    }
+
+    @Test
+    public void getFlagIds_onlyIncludesSelectedRegions() {
+        int[] ids = sampleCatalog().getFlagIds(Collections.singleton("Africa"));
+
+        assertArrayEquals(new int[]{ 0, 1 }, ids);
+    }
+
+    @Test
+    public void getFlagIds_byRegionMask_isCached() {
+        FlagCatalog catalog = sampleCatalog();
+        int mask = catalog.getRegionMask(Arrays.asList("North_America", "Atlantis"));
+
+        assertEquals(1 << 1, mask);
+        assertEquals(1 << 1, catalog.getRegionMaskOf(2));
+        assertArrayEquals(new int[]{ 2 }, catalog.getFlagIds(mask));
+        assertSame(catalog.getFlagIds(mask), catalog.getFlagIds(Collections.singleton("North_America")));
+        assertArrayEquals(new int[]{ 0, 1, 2 }, catalog.getFlagIds(1 | 1 << 1));
+        assertEquals(0, catalog.getFlagIds(0).length);
+    }
+}
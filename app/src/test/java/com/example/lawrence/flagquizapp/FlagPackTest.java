@@ -0,0 +1,187 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FlagPackTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // same layout the packFlagPack task writes, one image byte per flag
+    private static byte[] pack(String region, String... names) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(FlagPack.MAGIC);
+        out.writeShort(FlagPack.VERSION);
+        out.writeUTF(region);
+        out.writeUTF(region.replace('_', ' '));
+        out.writeInt(names.length);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(body);
+        int offset = header.size() + 2 * 4 * (names.length + 1);
+        index.writeInt(offset);
+        for( String name : names ){
+            offset += name.getBytes("UTF-8").length;
+            index.writeInt(offset);
+        }
+        index.writeInt(offset);
+        for( int i=0; i < names.length; ++i ){
+            index.writeInt(++offset);
+        }
+        for( String name : names ){
+            index.write(name.getBytes("UTF-8"));
+        }
+        for( int i=0; i < names.length; ++i ){
+            index.writeByte(i + 1);
+        }
+
+        header.write(body.toByteArray());
+        return header.toByteArray();
+    }
+
+    private File writePack(String fileName, byte[] pack) throws IOException {
+        File file = new File(folder.getRoot(), fileName);
+        FileOutputStream out = new FileOutputStream(file);
+        try{
+            out.write(pack);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static FlagCatalog bundledCatalog() {
+        return FlagCatalog.fromAssetPaths(
+                new String[]{ "Africa", "Europe" },
+                Arrays.asList("Africa/Africa-Kenya.png", "Europe/Europe-France.png"));
+    }
+
+    @Test
+    public void open_readsHeaderNamesAndImages() throws IOException {
+        FlagPack pack = FlagPack.open(
+                writePack("Historical.flagpack", pack("Historical", "Prussia", "Za\u00EFre")), 100);
+
+        assertEquals("Historical", pack.getRegion());
+        assertEquals(2, pack.size());
+        assertTrue(pack.contains(101));
+        assertFalse(pack.contains(102));
+        assertEquals("Za\u00EFre", pack.getDisplayName(101));
+        assertEquals(ByteBuffer.wrap(new byte[]{ 1 }), pack.getFlag(100));
+
+        InputStream stream = pack.openFlag(101);
+        assertEquals(2, stream.read());
+        assertEquals(-1, stream.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_rejectsTruncatedPacks() throws IOException {
+        byte[] bytes = pack("Historical", "Prussia", "Zaire");
+        new FlagPack(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)), 0);
+    }
+
+    @Test
+    public void constructor_rejectsOffsetsOutOfOrderOrRange() throws IOException {
+        byte[] bytes = pack("Historical", "Prussia", "Zaire");
+        int namesIndex = 4 + 2 + 2 + "Historical".length() + 2 + "Historical".length() + 4;
+
+        // a name offset past the end of the file, then image offsets going backwards
+        int[] corruptions = { namesIndex + 4, namesIndex + 4 * 3 + 8 };
+        int[] values = { bytes.length + 1, 0 };
+        for( int i=0; i < corruptions.length; ++i ){
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.clone());
+            buffer.putInt(corruptions[i], values[i]);
+            try{
+                new FlagPack(buffer, 0);
+                fail("accepted corrupt offset at " + corruptions[i]);
+            } catch(IOException expected) {
+                // rejected like a truncated pack
+            }
+        }
+    }
+
+    @Test
+    public void scan_registersNewPacksAboveBundledFlags() throws IOException {
+        FlagPacks packs = new FlagPacks(folder.getRoot(), bundledCatalog());
+        writePack("b.flagpack", pack("Historical", "Prussia", "Zaire"));
+        writePack("c.flagpack", pack("Europe", "Bavaria"));     // clashes with a bundled region
+        writePack("notes.txt", new byte[]{ 1, 2, 3 });
+
+        assertEquals(1, packs.scan());
+        assertEquals(0, packs.scan());
+        int first = FlagPacks.FIRST_PACK_ID;
+        assertEquals("Prussia", packs.getDisplayName(first));
+
+        // a pack dropped in later, its ids follow the packs already registered
+        writePack("a.flagpack", pack("Subnational", "Bavaria", "Texas", "Wales"));
+        assertEquals(1, packs.scan());
+        assertEquals(2, packs.getPacks().length);
+        assertEquals("Texas", packs.getDisplayName(first + 3));
+
+        int africa = packs.getRegionMask(Collections.singleton("Africa"));
+        assertEquals(1, africa);
+        assertArrayEquals(new int[]{ 0 }, packs.getFlagIds(africa));
+
+        // pack regions get the bits after the bundled regions, in registration order
+        int mask = packs.getRegionMask(Arrays.asList("Africa", "Subnational"));
+        assertEquals(1 | 1 << 3, mask);
+        assertArrayEquals(new int[]{ 0, first + 2, first + 3, first + 4 }, packs.getFlagIds(mask));
+        assertSame(packs.getFlagIds(mask), packs.getFlagIds(mask));
+        assertTrue(packs.contains(first));
+        assertFalse(packs.contains(1));
+        assertFalse(packs.contains(first + 5));    // no pack owns it
+    }
+
+    @Test
+    public void scan_retriesRejectedPacksOnlyOnceChanged() throws IOException {
+        FlagPacks packs = new FlagPacks(folder.getRoot(), bundledCatalog());
+        byte[] bytes = pack("Historical", "Prussia", "Zaire");
+        File file = writePack("b.flagpack", Arrays.copyOf(bytes, bytes.length - 1));   // still being copied
+
+        assertEquals(0, packs.scan());
+        assertEquals(0, packs.scan());
+
+        long modified = file.lastModified();
+        writePack("b.flagpack", bytes);
+        assertTrue(file.setLastModified(modified + 1000));
+        assertEquals(1, packs.scan());
+        assertEquals("Zaire", packs.getDisplayName(FlagPacks.FIRST_PACK_ID + 1));
+    }
+
+    @Test
+    public void packIds_stayTheSameAcrossRestartsAndRemovals() throws IOException {
+        int first = FlagPacks.FIRST_PACK_ID;
+        writePack("b.flagpack", pack("Historical", "Prussia", "Zaire"));
+        new FlagPacks(folder.getRoot(), bundledCatalog()).scan();
+        File subnational = writePack("a.flagpack", pack("Subnational", "Bavaria", "Texas"));
+        new FlagPacks(folder.getRoot(), bundledCatalog()).scan();
+
+        // a restart finds a.flagpack first, but ids follow the order packs were first seen
+        FlagPacks packs = new FlagPacks(folder.getRoot(), bundledCatalog());
+        assertEquals(2, packs.scan());
+        assertEquals("Zaire", packs.getDisplayName(first + 1));
+        assertEquals("Texas", packs.getDisplayName(first + 3));
+
+        // removing a pack neither moves the others nor frees its ids for new packs
+        assertTrue(subnational.delete());
+        writePack("c.flagpack", pack("Fictional", "Ruritania"));
+        packs = new FlagPacks(folder.getRoot(), bundledCatalog());
+        assertEquals(2, packs.scan());
+        assertEquals("Prussia", packs.getDisplayName(first));
+        assertEquals("Ruritania", packs.getDisplayName(first + 4));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FlagSimilarityIndexTest {
+
+    private static final FlagSimilarityIndex.Filter ALL = new FlagSimilarityIndex.Filter() {
+        @Override
+        public boolean accept(int flagId) {
+            return true;
+        }
+    };
+
+    // flag i has the lowest i bits of its layout hash set, so the distance between flags is |i - j|
+    private static FlagSimilarityIndex ladder(int size) {
+        long[] layouts = new long[size];
+        for( int i=0; i < size; ++i ){
+            layouts[i] = (1L << i) - 1;
+        }
+        return FlagSimilarityIndex.build(layouts, new long[size]);
+    }
+
+    @Test
+    public void findNearest_returnsClosestFlagsInOrder() {
+        FlagSimilarityIndex index = ladder(40);
+        int[] out = new int[4];
+
+        assertEquals(4, index.findNearest(20, 4, ALL, out));
+        assertEquals(2, index.distance(20, out[2]));
+        assertEquals(1, index.distance(20, out[0]));
+        assertTrue(out[0] == 19 || out[0] == 21);
+        assertTrue(out[3] == 18 || out[3] == 22);
+    }
+
+    @Test
+    public void findNearest_skipsFilteredFlags() {
+        FlagSimilarityIndex index = ladder(40);
+        FlagSimilarityIndex.Filter even = new FlagSimilarityIndex.Filter() {
+            @Override
+            public boolean accept(int flagId) {
+                return flagId % 2 == 0;
+            }
+        };
+        int[] out = new int[3];
+
+        assertEquals(3, index.findNearest(11, 3, even, out));
+        for( int flag : out ){
+            assertEquals(0, flag % 2);
+            assertTrue(Math.abs(flag - 11) <= 3);
+        }
+    }
+
+    @Test
+    public void hardQuestion_usesLookAlikeCandidatesAsDistractors() {
+        FlagSimilarityIndex index = ladder(60);
+        int[] region = new int[30];
+        for( int i=0; i < region.length; ++i ){
+            region[i] = 2 * i;      // only even flags are in the quiz
+        }
+
+        QuizEngine engine = new QuizEngine(new Random(4));
+        engine.reset(region, region.length, 10);
+        while( engine.hasNextQuestion() ){
+            int correct = engine.nextQuestion(4, index);
+            assertEquals(correct, engine.getChoice(engine.getCorrectChoice()));
+
+            Set<Integer> choices = new HashSet<>();
+            for( int i=0; i < engine.getChoiceCount(); ++i ){
+                int choice = engine.getChoice(i);
+                assertTrue(choices.add(choice));
+                assertEquals(0, choice % 2);
+                assertTrue(Math.abs(choice - correct) <= 6);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void percentiles_areBucketUpperBounds() {
+        Histogram histogram = new Histogram("test");
+        for( int i=0; i < 90; ++i ){
+            histogram.record(100000);       // 100 us, bucket 64-127 us
+        }
+        for( int i=0; i < 10; ++i ){
+            histogram.record(5000000);      // 5 ms, bucket 4096-8191 us
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(127, histogram.getPercentileMicros(0.5));
+        assertEquals(127, histogram.getPercentileMicros(0.9));
+        assertEquals(5000, histogram.getPercentileMicros(0.99));   // capped by the max
+        assertEquals(5000000, histogram.getMaxNanos());
+        assertEquals(590000, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void addAll_mergesSamples() {
+        Histogram a = new Histogram("a");
+        Histogram b = new Histogram("b");
+        a.record(1000);
+        b.record(3000);
+        b.record(-5);       // clock went backwards, counted as 0
+
+        a.addAll(b);
+        assertEquals(3, a.getCount());
+        assertEquals(3000, a.getMaxNanos());
+        assertEquals(0, a.getPercentileMicros(0.3));
+
+        a.clear();
+        assertEquals(0, a.getCount());
+        assertEquals(0, a.getPercentileMicros(0.5));
+    }
+
+    @Test
+    public void bucketOf_isLog2OfMicros() {
+        assertEquals(0, Histogram.bucketOf(0));
+        assertEquals(1, Histogram.bucketOf(1));
+        assertEquals(2, Histogram.bucketOf(3));
+        assertEquals(3, Histogram.bucketOf(4));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketOf(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class QuizEngineTest {
+
+    private static int[] range(int start, int count) {
+        int[] ids = new int[count];
+        for( int i=0; i < count; ++i ){
+            ids[i] = start + i;
+        }
+        return ids;
+    }
+
+    @Test
+    public void reset_picksDistinctFlagsFromCandidates() {
+        QuizEngine engine = new QuizEngine(new Random(42));
+        engine.reset(range(100, 50), 50, 10);
+
+        Set<Integer> seen = new HashSet<>();
+        while( engine.hasNextQuestion() ){
+            int correct = engine.nextQuestion(4);
+            assertTrue(correct >= 100 && correct < 150);
+            assertTrue("flag repeated: " + correct, seen.add(correct));
+        }
+        assertEquals(10, seen.size());
+    }
+
+    @Test
+    public void nextQuestion_choicesAreDistinctAndContainCorrectFlag() {
+        QuizEngine engine = new QuizEngine(new Random(7));
+        engine.reset(range(0, 20), 20, 10);
+
+        while( engine.hasNextQuestion() ){
+            int correct = engine.nextQuestion(8);
+            assertEquals(8, engine.getChoiceCount());
+            assertEquals(correct, engine.getChoice(engine.getCorrectChoice()));
+
+            Set<Integer> choices = new HashSet<>();
+            for( int i=0; i < engine.getChoiceCount(); ++i ){
+                assertTrue(choices.add(engine.getChoice(i)));
+            }
+        }
+    }
+
+    @Test
+    public void reset_shortensQuizWhenThereAreFewFlags() {
+        QuizEngine engine = new QuizEngine(new Random(1));
+        engine.reset(range(0, 3), 3, 10);
+
+        assertEquals(3, engine.getQuizLength());
+        engine.nextQuestion(8);
+        assertEquals(3, engine.getChoiceCount());
+    }
+
+    @Test
+    public void getUpcomingFlag_returnsQuizOrder() {
+        QuizEngine engine = new QuizEngine(new Random(3));
+        engine.reset(range(0, 30), 30, 5);
+
+        int second = engine.getUpcomingFlag(2);
+        engine.nextQuestion(2);
+        assertEquals(second, engine.nextQuestion(2));
+        assertEquals(-1, engine.getUpcomingFlag(4));
+    }
+
+    @Test
+    public void nextQuestion_correctChoicePositionIsRoughlyUniform() {
+        QuizEngine engine = new QuizEngine(new Random(11));
+        int[] counts = new int[4];
+
+        for( int quiz=0; quiz < 1000; ++quiz ){
+            engine.reset(range(0, 40), 40, 10);
+            while( engine.hasNextQuestion() ){
+                engine.nextQuestion(4);
+                ++counts[engine.getCorrectChoice()];
+            }
+        }
+
+        for( int count : counts ){
+            assertEquals(2500, count, 250);
+        }
+    }
+
+    @Test
+    public void longQuiz_drawsInWindowsWithoutRepeats() {
+        // a speed run over every flag, weighted, with choices shuffling candidates between draws
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        AnswerStats stats = new AnswerStats();
+        for( int i=0; i < 20; ++i ){
+            stats.add(i, false, 5000);
+        }
+        sampler.updateStats(stats);
+
+        QuizEngine engine = new QuizEngine(new Random(11));
+        int count = 5 * QuizEngine.DRAW_WINDOW + 3;
+        engine.reset(range(0, count), count, count, sampler);
+
+        Set<Integer> seen = new HashSet<>();
+        while( engine.hasNextQuestion() ){
+            assertTrue(seen.add(engine.nextQuestion(8)));
+        }
+        assertEquals(count, seen.size());
+    }
+
+    @Test
+    public void prepareNextQuestion_picksTheChoicesNextQuestionUses() {
+        QuizEngine engine = new QuizEngine(new Random(3));
+        engine.reset(range(0, 30), 30, 10);
+        assertEquals(0, engine.getNextChoiceCount());
+
+        while( engine.hasNextQuestion() ){
+            engine.prepareNextQuestion(6, null);
+            int[] prepared = new int[engine.getNextChoiceCount()];
+            for( int i=0; i < prepared.length; ++i ){
+                prepared[i] = engine.getNextChoice(i);
+            }
+
+            engine.nextQuestion(6);
+            assertEquals(prepared.length, engine.getChoiceCount());
+            for( int i=0; i < prepared.length; ++i ){
+                assertEquals(prepared[i], engine.getChoice(i));
+            }
+            assertEquals(0, engine.getNextChoiceCount());
+        }
+    }
+}
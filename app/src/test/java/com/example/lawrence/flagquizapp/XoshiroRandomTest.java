@@ -0,0 +1,55 @@
+package com.example.lawrence.flagquizapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class XoshiroRandomTest {
+
+    @Test
+    public void sameSeed_producesSameSequence() {
+        XoshiroRandom a = new XoshiroRandom(1234);
+        XoshiroRandom b = new XoshiroRandom(0);
+        b.setSeed(1234);
+
+        for( int i=0; i < 100; ++i ){
+            assertEquals(a.nextInt(), b.nextInt());
+        }
+        assertEquals(1234, b.getSeed());
+    }
+
+    @Test
+    public void nextInt_isRoughlyUniform() {
+        XoshiroRandom random = new XoshiroRandom(99);
+        int[] counts = new int[8];
+
+        for( int i=0; i < 80000; ++i ){
+            ++counts[random.nextInt(8)];
+        }
+
+        for( int count : counts ){
+            assertEquals(10000, count, 500);
+        }
+    }
+
+    @Test
+    public void sameSeed_replaysWholeQuiz() {
+        int[] flagIds = new int[200];
+        for( int i=0; i < flagIds.length; ++i ){
+            flagIds[i] = i;
+        }
+
+        QuizEngine first = new QuizEngine(new XoshiroRandom(42));
+        QuizEngine replay = new QuizEngine(new XoshiroRandom(42));
+        first.reset(flagIds, flagIds.length, 10);
+        replay.reset(flagIds, flagIds.length, 10);
+
+        while( first.hasNextQuestion() ){
+            assertEquals(first.nextQuestion(6), replay.nextQuestion(6));
+            assertEquals(first.getCorrectChoice(), replay.getCorrectChoice());
+            for( int i=0; i < first.getChoiceCount(); ++i ){
+                assertEquals(first.getChoice(i), replay.getChoice(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.lawrence.flagquizapp.benchmarks;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// builds FlagCatalogs from the app's assets tree for the benchmarks.
+// catalogs bigger than the bundled one are scaled up with synthetic copies of the real flags.
+final class BenchmarkCatalogs {
+
+    static final String BUNDLED = "bundled";    // catalogSize param for the real catalog
+    static final String ALL = "all";            // regions param for every region
+
+    private BenchmarkCatalogs() {}
+
+    // the app's src/main/assets directory, passed in by the jmh task
+    static File assetsDir() {
+        return new File(System.getProperty("flagAssetsDir", "../app/src/main/assets"));
+    }
+
+    // region directory names, sorted so their order matches the generated catalog
+    static String[] regions() {
+        List<String> regions = new ArrayList<>();
+        for( File file : listFiles(assetsDir()) ){
+            if( file.isDirectory() ) regions.add(file.getName());
+        }
+        return regions.toArray(new String[regions.size()]);
+    }
+
+    // "<Region>/<Region>-<Country_Name>.png" of every bundled flag, in catalog order
+    static List<String> assetPaths() {
+        List<String> paths = new ArrayList<>();
+        for( String region : regions() ){
+            for( File file : listFiles(new File(assetsDir(), region)) ){
+                if( file.getName().endsWith(".png") ) paths.add(region + "/" + file.getName());
+            }
+        }
+        return paths;
+    }
+
+    // the bundled catalog, or one with exactly size flags if size is a number
+    static FlagCatalog catalog(String size) {
+        FlagCatalog bundled = FlagCatalog.fromAssetPaths(regions(), assetPaths());
+        if( BUNDLED.equals(size) ) return bundled;
+
+        int count = Integer.parseInt(size);
+        String[] regions = new String[bundled.getRegionCount()];
+        for( int i=0; i < regions.length; ++i ){
+            regions[i] = bundled.getRegion(i);
+        }
+
+        int[] regionOrdinals = new int[count];
+        String[] fileNames = new String[count];
+        String[] displayNames = new String[count];
+        String[] assetPaths = new String[count];
+
+        for( int id=0; id < count; ++id ){
+            int source = id % bundled.size();
+            int copy = id / bundled.size();
+            String suffix = copy == 0 ? "" : "_" + copy;
+
+            regionOrdinals[id] = bundled.getRegionOrdinalOf(source);
+            fileNames[id] = bundled.getFileName(source) + suffix;
+            displayNames[id] = FlagCatalog.displayNameOf(fileNames[id]);
+            assetPaths[id] = bundled.getAssetPath(source);     // synthetic flags reuse the real image
+        }
+
+        return new FlagCatalog(regions, regionOrdinals, fileNames, displayNames, assetPaths);
+    }
+
+    // regions param is "all" or a comma separated list of region names
+    static Set<String> regionSet(String spec) {
+        if( ALL.equals(spec) ) return new HashSet<>(Arrays.asList(regions()));
+        return new HashSet<>(Arrays.asList(spec.split(",")));
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        if( files == null ) throw new IllegalStateException("Can't list flag assets in " + dir);
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.lawrence.flagquizapp.benchmarks;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+import com.example.lawrence.flagquizapp.QuizEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// catalog build and load, and the region filtering + flag selection done by resetQuiz()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({ BenchmarkCatalogs.BUNDLED, "1000", "10000" })
+    public String catalogSize;
+
+    @Param({ BenchmarkCatalogs.ALL, "North_America", "Africa,Asia" })
+    public String regions;
+
+    private String[] regionNames;
+    private List<String> assetPaths;
+    private byte[] catalogBytes;
+    private FlagCatalog catalog;
+    private Set<String> regionSet;
+    private QuizEngine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        regionNames = BenchmarkCatalogs.regions();
+        assetPaths = BenchmarkCatalogs.assetPaths();
+        catalog = BenchmarkCatalogs.catalog(catalogSize);
+        regionSet = BenchmarkCatalogs.regionSet(regions);
+        engine = new QuizEngine(new Random(42));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        catalog.write(bytes);
+        catalogBytes = bytes.toByteArray();
+    }
+
+    // building the catalog from asset paths, as the generateFlagCatalog task does
+    @Benchmark
+    public FlagCatalog buildFromAssetPaths() {
+        return FlagCatalog.fromAssetPaths(regionNames, assetPaths);
+    }
+
+    // parsing the generated binary catalog, done once per process
+    @Benchmark
+    public FlagCatalog load() throws IOException {
+        return FlagCatalog.read(new ByteArrayInputStream(catalogBytes));
+    }
+
+    // region filtering only, a cached lookup by region mask once the selection has been used
+    @Benchmark
+    public int[] selectRegions() {
+        return catalog.getFlagIds(regionSet);
+    }
+
+    // everything resetQuiz() does before loading the first flag
+    @Benchmark
+    public int resetQuiz() {
+        int[] flagIds = catalog.getFlagIds(regionSet);
+        engine.reset(flagIds, flagIds.length, 10);
+        return engine.getQuizLength();
+    }
+}
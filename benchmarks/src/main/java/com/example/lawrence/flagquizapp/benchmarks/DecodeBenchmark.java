@@ -0,0 +1,59 @@
+package com.example.lawrence.flagquizapp.benchmarks;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+// PNG decode of the bundled flags with the JVM's ImageIO decoder.
+// this doesn't match BitmapFactory's absolute numbers, but tracks changes to the assets themselves.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({ BenchmarkCatalogs.ALL, "North_America", "Africa,Asia" })
+    public String regions;
+
+    private byte[][] images;    // encoded flags, read up front so only decoding is measured
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        FlagCatalog catalog = BenchmarkCatalogs.catalog(BenchmarkCatalogs.BUNDLED);
+        int[] flagIds = catalog.getFlagIds(BenchmarkCatalogs.regionSet(regions));
+
+        images = new byte[flagIds.length][];
+        for( int i=0; i < flagIds.length; ++i ){
+            File file = new File(BenchmarkCatalogs.assetsDir(), catalog.getAssetPath(flagIds[i]));
+            images[i] = Files.readAllBytes(file.toPath());
+        }
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        if( ++next == images.length ) next = 0;
+        return ImageIO.read(new ByteArrayInputStream(images[next]));
+    }
+}
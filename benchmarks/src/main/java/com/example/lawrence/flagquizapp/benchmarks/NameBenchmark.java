@@ -0,0 +1,55 @@
+package com.example.lawrence.flagquizapp.benchmarks;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// the "Region-Country_Name" -> "Country Name" string handling done by getCountryName()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameBenchmark {
+
+    @Param({ BenchmarkCatalogs.BUNDLED, "10000" })
+    public String catalogSize;
+
+    private FlagCatalog catalog;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        catalog = BenchmarkCatalogs.catalog(catalogSize);
+    }
+
+    // substring + replace on every call
+    @Benchmark
+    public String formatName() {
+        return FlagCatalog.displayNameOf(catalog.getFileName(nextId()));
+    }
+
+    // name formatted once when the catalog was built
+    @Benchmark
+    public String cachedName() {
+        return catalog.getDisplayName(nextId());
+    }
+
+    private int nextId() {
+        if( ++next == catalog.size() ) next = 0;
+        return next;
+    }
+}
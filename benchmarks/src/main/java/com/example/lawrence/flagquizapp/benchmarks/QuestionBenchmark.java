@@ -0,0 +1,87 @@
+package com.example.lawrence.flagquizapp.benchmarks;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+import com.example.lawrence.flagquizapp.QuizEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// per-question flag and answer choice selection done by loadNextFlag()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionBenchmark {
+
+    @Param({ BenchmarkCatalogs.BUNDLED, "1000", "10000" })
+    public String catalogSize;
+
+    @Param({ "2", "4", "6", "8" })      // values of guesses_list
+    public int choices;
+
+    private FlagCatalog catalog;
+    private int[] flagIds;
+    private QuizEngine engine;
+
+    // state of the shuffle-the-whole-list approach loadNextFlag() used before QuizEngine
+    private Random random;
+    private List<String> fileNameList;
+    private int legacyQuestion;
+
+    @Setup
+    public void setUp() {
+        catalog = BenchmarkCatalogs.catalog(catalogSize);
+        flagIds = catalog.getFlagIds(BenchmarkCatalogs.regionSet(BenchmarkCatalogs.ALL));
+        engine = new QuizEngine(new Random(42));
+
+        random = new Random(42);
+        fileNameList = new ArrayList<>();
+        for( int id=0; id < catalog.size(); ++id ){
+            fileNameList.add(catalog.getFileName(id));
+        }
+    }
+
+    @Benchmark
+    public void nextQuestion(Blackhole blackhole) {
+        // quizzes cover the whole catalog, so the O(n) reset is amortized over n questions
+        if( !engine.hasNextQuestion() ) engine.reset(flagIds, flagIds.length, flagIds.length);
+
+        blackhole.consume(engine.nextQuestion(choices));
+        for( int i=0; i < engine.getChoiceCount(); ++i ){
+            blackhole.consume(catalog.getDisplayName(engine.getChoice(i)));
+        }
+    }
+
+    // baseline: Collections.shuffle over every flag, then indexOf + remove/add of the correct answer
+    @Benchmark
+    public void legacyNextQuestion(Blackhole blackhole) {
+        String correctAnswer = fileNameList.get((legacyQuestion++ * 31) % fileNameList.size());
+
+        Collections.shuffle(fileNameList, random);
+        int correct = fileNameList.indexOf(correctAnswer);
+        fileNameList.add(fileNameList.remove(correct));
+
+        for( int i=0; i < choices; ++i ){
+            blackhole.consume(FlagCatalog.displayNameOf(fileNameList.get(i)));
+        }
+        blackhole.consume(random.nextInt(choices));
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.lawrence.flagquizapp.simulator;
+
+import com.example.lawrence.flagquizapp.FlagCatalog;
+import com.example.lawrence.flagquizapp.QuizEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// headless entry point that runs many independent quiz sessions concurrently on a thread pool, each
+// with a simulated player, and reports throughput, per-question latency percentiles and how
+// uniformly flags and correct button positions come up.
+// every session reads the same immutable FlagCatalog built from the app's assets tree and the same
+// candidate flag ids. a session's engine, random generators and counters belong to the worker
+// running it, so the hot path takes no locks, and workers' results are merged once they're done.
+// each session's quiz only depends on its seed, so a run gives the same quizzes on any number of threads.
+public final class QuizSimulator {
+
+    private QuizSimulator() {}
+
+    // command line options, see usage()
+    static final class Options {
+        long sessions = 100000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int choices = 4;
+        int flagsPerQuiz = 10;
+        double accuracy = 0.7;      // chance the simulated player picks the correct flag
+        long seed = 42;
+        String regions = "all";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for( int i=0; i < args.length; i += 2 ){
+                if( i + 1 >= args.length ) throw new IllegalArgumentException("Missing value for " + args[i]);
+                String value = args[i + 1];
+
+                switch( args[i] ){
+                    case "--sessions": options.sessions = Long.parseLong(value); break;
+                    case "--threads": options.threads = Integer.parseInt(value); break;
+                    case "--choices": options.choices = Integer.parseInt(value); break;
+                    case "--flags": options.flagsPerQuiz = Integer.parseInt(value); break;
+                    case "--accuracy": options.accuracy = Double.parseDouble(value); break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    case "--regions": options.regions = value; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            if( options.sessions < 1 || options.threads < 1 || options.flagsPerQuiz < 1 ||
+                options.choices < 2 || options.choices > QuizEngine.MAX_CHOICES ||
+                options.accuracy < 0 || options.accuracy > 1 ){
+                throw new IllegalArgumentException("Option out of range");
+            }
+            return options;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: QuizSimulator [--sessions n] [--threads n] [--choices 2-8] [--flags n]\n" +
+                           "                     [--accuracy 0-1] [--seed n] [--regions all|Region,Region...]\n" +
+                           "the flag assets directory is read from the flagAssetsDir system property");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try{
+            options = Options.parse(args);
+        } catch(IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            usage();
+            System.exit(2);
+            return;
+        }
+
+        FlagCatalog catalog = loadCatalog(new File(System.getProperty("flagAssetsDir", "../app/src/main/assets")));
+        int[] flagIds = catalog.getFlagIds(regionSet(catalog, options.regions));
+        if( flagIds.length < options.choices ){
+            throw new IllegalStateException("Only " + flagIds.length + " flags in regions " + options.regions);
+        }
+
+        // one worker per thread, each running every threads-th session
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+        List<Future<SimulationResult>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for( int worker=0; worker < options.threads; ++worker ){
+            futures.add(executor.submit(new SessionWorker(flagIds, catalog.size(), options, worker, options.threads)));
+        }
+        SimulationResult result = null;
+        for( Future<SimulationResult> future : futures ){
+            if( result == null ){
+                result = future.get();
+            } else {
+                result.merge(future.get());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        report(catalog, flagIds, options, result, seconds);
+    }
+
+    private static void report(FlagCatalog catalog, int[] flagIds, Options options,
+                               SimulationResult result, double seconds) {
+        System.out.printf("Simulated %d sessions (%d questions) of %d flags from %s on %d threads in %.2f s%n",
+                result.getSessions(), result.getQuestions(), flagIds.length, options.regions,
+                options.threads, seconds);
+        System.out.printf("  throughput: %.0f sessions/s, %.0f questions/s%n",
+                result.getSessions() / seconds, result.getQuestions() / seconds);
+
+        long[] percentiles = result.getLatencyPercentiles(0.5, 0.9, 0.99, 0.999);
+        System.out.printf("  question latency: p50 %d ns, p90 %d ns, p99 %d ns, p99.9 %d ns, max %d ns, mean %d ns%n",
+                percentiles[0], percentiles[1], percentiles[2], percentiles[3],
+                result.getLatency().getMaxNanos(), result.getLatency().getMeanNanos());
+        System.out.printf("  player: %.2f guesses per question%n",
+                result.getGuesses() / (double) result.getQuestions());
+
+        // every candidate flag should be the correct answer equally often
+        long[] flagCounts = new long[flagIds.length];
+        long minCount = Long.MAX_VALUE;
+        long maxCount = 0;
+        for( int i=0; i < flagIds.length; ++i ){
+            flagCounts[i] = result.getFlagCount(flagIds[i]);
+            minCount = Math.min(minCount, flagCounts[i]);
+            maxCount = Math.max(maxCount, flagCounts[i]);
+        }
+        printUniformity("flags", flagCounts);
+        System.out.printf("    each flag shown %d to %d times, expected %.1f%n",
+                minCount, maxCount, result.getQuestions() / (double) flagIds.length);
+
+        // and the correct answer should be on every button equally often
+        int choiceCount = Math.min(options.choices, flagIds.length);
+        long[] positionCounts = new long[choiceCount];
+        StringBuilder shares = new StringBuilder();
+        for( int i=0; i < choiceCount; ++i ){
+            positionCounts[i] = result.getPositionCount(i);
+            shares.append(String.format(" %.2f%%", 100.0 * positionCounts[i] / result.getQuestions()));
+        }
+        printUniformity("correct button positions", positionCounts);
+        System.out.println("    share of each button:" + shares);
+    }
+
+    private static void printUniformity(String what, long[] counts) {
+        double chiSquare = Uniformity.chiSquare(counts);
+        int degreesOfFreedom = counts.length - 1;
+        double p = Uniformity.pValue(chiSquare, degreesOfFreedom);
+
+        System.out.printf("  uniformity of %s: chi-square %.1f with %d degrees of freedom, p = %.4f%s%n",
+                what, chiSquare, degreesOfFreedom, p, p < 0.001 ? " (BIASED)" : "");
+    }
+
+    // catalog of every "<Region>/<Region>-<Country_Name>.png" in the assets tree, in the same
+    // order as the one the app build generates
+    static FlagCatalog loadCatalog(File assetsDir) {
+        List<String> regions = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+
+        for( File region : listFiles(assetsDir) ){
+            if( !region.isDirectory() ) continue;
+            regions.add(region.getName());
+            for( File file : listFiles(region) ){
+                if( file.getName().endsWith(".png") ) paths.add(region.getName() + "/" + file.getName());
+            }
+        }
+
+        return FlagCatalog.fromAssetPaths(regions.toArray(new String[regions.size()]), paths);
+    }
+
+    // "all" or a comma separated list of region names
+    private static Set<String> regionSet(FlagCatalog catalog, String spec) {
+        Set<String> regions = new HashSet<>();
+        if( spec.equals("all") ){
+            for( int i=0; i < catalog.getRegionCount(); ++i ){
+                regions.add(catalog.getRegion(i));
+            }
+        } else {
+            regions.addAll(Arrays.asList(spec.split(",")));
+        }
+        return regions;
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        if( files == null ) throw new IllegalStateException("Can't list flag assets in " + dir);
+        Arrays.sort(files);
+        return files;
+    }
+}
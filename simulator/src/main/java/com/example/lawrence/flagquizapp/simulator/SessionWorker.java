@@ -0,0 +1,75 @@
+package com.example.lawrence.flagquizapp.simulator;
+
+import com.example.lawrence.flagquizapp.QuizEngine;
+import com.example.lawrence.flagquizapp.XoshiroRandom;
+
+import java.util.concurrent.Callable;
+
+// runs every workerCount-th session on one thread, each with a simulated player who guesses until
+// right like in the app: the correct flag with probability accuracy, otherwise a random choice not
+// tried yet. the engine and random generators are reseeded for every session instead of recreated,
+// and results go to counters owned by this worker, so sessions allocate nothing and share nothing.
+final class SessionWorker implements Callable<SimulationResult> {
+
+    private final int[] flagIds;        // shared with every worker, only read
+    private final int catalogSize;
+    private final QuizSimulator.Options options;
+    private final int worker;
+    private final int workerCount;
+
+    SessionWorker(int[] flagIds, int catalogSize, QuizSimulator.Options options, int worker, int workerCount) {
+        this.flagIds = flagIds;
+        this.catalogSize = catalogSize;
+        this.options = options;
+        this.worker = worker;
+        this.workerCount = workerCount;
+    }
+
+    @Override
+    public SimulationResult call() {
+        XoshiroRandom quizRandom = new XoshiroRandom();
+        XoshiroRandom playerRandom = new XoshiroRandom();
+        QuizEngine engine = new QuizEngine(quizRandom);
+        SimulationResult result = new SimulationResult(catalogSize, options.seed + worker);
+
+        for( long session=worker; session < options.sessions; session += workerCount ){
+            // a session's quiz depends on nothing but its seed, whichever worker runs it
+            quizRandom.setSeed(options.seed + session);
+            playerRandom.setSeed(~(options.seed + session));
+            engine.reset(flagIds, flagIds.length, options.flagsPerQuiz);
+
+            int guesses = 0;
+            while( engine.hasNextQuestion() ){
+                long start = System.nanoTime();
+                int correct = engine.nextQuestion(options.choices);
+                result.recordQuestion(correct, engine.getCorrectChoice(), System.nanoTime() - start);
+
+                guesses += play(engine, playerRandom);
+            }
+            result.recordSession(guesses);
+        }
+
+        return result;
+    }
+
+    // guess until the current question is answered, returns the number of guesses
+    private int play(QuizEngine engine, XoshiroRandom random) {
+        int tried = 0;      // bit i is set if choice i was guessed wrong
+        int guesses = 0;
+
+        while( true ){
+            int choice;
+            if( random.nextDouble() < options.accuracy ){
+                choice = engine.getCorrectChoice();
+            } else {
+                do{
+                    choice = random.nextInt(engine.getChoiceCount());
+                } while( (tried & (1 << choice)) != 0 );
+            }
+
+            ++guesses;
+            if( engine.isCorrect(engine.getChoice(choice)) ) return guesses;
+            tried |= 1 << choice;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.lawrence.flagquizapp.simulator;
+
+import com.example.lawrence.flagquizapp.Histogram;
+import com.example.lawrence.flagquizapp.QuizEngine;
+import com.example.lawrence.flagquizapp.XoshiroRandom;
+
+import java.util.Arrays;
+
+// counters of the sessions run by one worker, merged into one result once every worker is done.
+// not thread-safe: each worker fills its own.
+final class SimulationResult {
+
+    static final int LATENCY_SAMPLES = 1 << 16;     // question latencies kept per worker for percentiles
+
+    private long sessions;
+    private long questions;
+    private long guesses;
+    private final long[] flagCounts;        // questions each flag was the correct answer of, by flag id
+    private final long[] positionCounts = new long[QuizEngine.MAX_CHOICES];  // by correct button
+
+    // every latency goes into the histogram (exact count, mean and max), a uniform random sample
+    // of them is kept for exact percentiles, since the histogram's buckets are coarser than a question
+    private final Histogram latency = new Histogram("question");
+    private long[] latencySamples = new long[LATENCY_SAMPLES];
+    private int latencySampleCount;
+    private final XoshiroRandom sampleRandom;
+
+    SimulationResult(int catalogSize, long seed) {
+        flagCounts = new long[catalogSize];
+        sampleRandom = new XoshiroRandom(seed);
+    }
+
+    void recordQuestion(int correctFlag, int correctChoice, long nanos) {
+        ++questions;
+        ++flagCounts[correctFlag];
+        ++positionCounts[correctChoice];
+        latency.record(nanos);
+
+        // reservoir sampling: every latency so far has the same chance to be in the sample
+        if( latencySampleCount < latencySamples.length ){
+            latencySamples[latencySampleCount++] = nanos;
+        } else {
+            long slot = (long) (sampleRandom.nextDouble() * questions);
+            if( slot < latencySamples.length ) latencySamples[(int) slot] = nanos;
+        }
+    }
+
+    void recordSession(int sessionGuesses) {
+        ++sessions;
+        guesses += sessionGuesses;
+    }
+
+    // add the counters of another worker. workers run nearly the same number of sessions,
+    // so their latency samples are simply pooled.
+    void merge(SimulationResult other) {
+        sessions += other.sessions;
+        questions += other.questions;
+        guesses += other.guesses;
+        for( int i=0; i < flagCounts.length; ++i ){
+            flagCounts[i] += other.flagCounts[i];
+        }
+        for( int i=0; i < positionCounts.length; ++i ){
+            positionCounts[i] += other.positionCounts[i];
+        }
+        latency.addAll(other.latency);
+
+        latencySamples = Arrays.copyOf(latencySamples, latencySampleCount + other.latencySampleCount);
+        System.arraycopy(other.latencySamples, 0, latencySamples, latencySampleCount, other.latencySampleCount);
+        latencySampleCount += other.latencySampleCount;
+    }
+
+    long getSessions() { return sessions; }
+
+    long getQuestions() { return questions; }
+
+    long getGuesses() { return guesses; }
+
+    long getFlagCount(int flagId) { return flagCounts[flagId]; }
+
+    long getPositionCount(int position) { return positionCounts[position]; }
+
+    Histogram getLatency() { return latency; }
+
+    // latencies in nanoseconds at each of the given fractions, e.g. 0.5 for the median
+    long[] getLatencyPercentiles(double... fractions) {
+        long[] sorted = Arrays.copyOf(latencySamples, latencySampleCount);
+        Arrays.sort(sorted);
+
+        long[] percentiles = new long[fractions.length];
+        for( int i=0; i < fractions.length; ++i ){
+            if( sorted.length == 0 ) continue;
+            int rank = (int) Math.ceil(fractions[i] * sorted.length);
+            percentiles[i] = sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+        }
+        return percentiles;
+    }
+}
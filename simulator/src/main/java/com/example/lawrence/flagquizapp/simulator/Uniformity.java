@@ -0,0 +1,48 @@
+package com.example.lawrence.flagquizapp.simulator;
+
+// Pearson's chi-square test of counts against a uniform distribution
+final class Uniformity {
+
+    private Uniformity() {}
+
+    // chi-square statistic of counts that should all be equal
+    static double chiSquare(long[] counts) {
+        long total = 0;
+        for( long count : counts ){
+            total += count;
+        }
+        if( total == 0 ) return 0;
+
+        double expected = total / (double) counts.length;
+        double chiSquare = 0;
+        for( long count : counts ){
+            double difference = count - expected;
+            chiSquare += difference * difference / expected;
+        }
+        return chiSquare;
+    }
+
+    // probability of a chi-square statistic at least this big if the counts really are uniform,
+    // using the Wilson-Hilferty normal approximation. small values (e.g. < 0.001) suggest bias.
+    static double pValue(double chiSquare, int degreesOfFreedom) {
+        if( degreesOfFreedom <= 0 ) return 1;
+
+        double k = degreesOfFreedom;
+        double z = (Math.cbrt(chiSquare / k) - (1 - 2 / (9 * k))) / Math.sqrt(2 / (9 * k));
+        return upperNormalTail(z);
+    }
+
+    // P(Z > z) for a standard normal Z, from the complementary error function
+    static double upperNormalTail(double z) {
+        return 0.5 * erfc(z / Math.sqrt(2));
+    }
+
+    // Numerical Recipes' erfc approximation, fractional error below 1.2e-7 everywhere
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.5 * Math.abs(x));
+        double y = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 +
+                t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 +
+                t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? y : 2 - y;
+    }
+}